@@ -0,0 +1,63 @@
+package net.edmison.HdrHistogram.cli.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.edmison.HdrHistogram.cli.EventProbability;
+import net.edmison.HdrHistogram.cli.ProbabilitySupplier;
+
+/**
+ * Measures the cost of a sample against the number of configured events and
+ * their probability, and the cost of a single EventProbability.nextDouble()
+ * call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventCostBenchmark {
+
+    @Param({ "1", "4", "16" })
+    int events;
+
+    @Param({ "0.01", "0.0001", "0.000001" })
+    double probability;
+
+    @Param({ "BERNOULLI", "GEOMETRIC" })
+    ProbabilitySupplier.Sampler sampler;
+
+    private ProbabilitySupplier supplier;
+    private EventProbability event;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        random = new Random(42);
+        supplier = sampler.create(Profiles.uniform(events, probability), random);
+        event = new EventProbability(probability, 200d, 20d);
+    }
+
+    @Benchmark
+    public long sample() {
+        return supplier.getAsLong();
+    }
+
+    @Benchmark
+    public double nextDouble() {
+        return event.nextDouble(random);
+    }
+}
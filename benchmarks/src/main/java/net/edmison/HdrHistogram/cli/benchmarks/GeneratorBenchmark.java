@@ -0,0 +1,80 @@
+package net.edmison.HdrHistogram.cli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.edmison.HdrHistogram.cli.ProbabilitySupplier;
+import net.edmison.HdrHistogram.cli.RandomEngine;
+
+/**
+ * Measures how many samples per second ProbabilitySupplier generates for each
+ * histogram type and random engine, one value at a time and a block at a time,
+ * with the README event profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({ "INT", "LONG", "DOUBLE" })
+    String type;
+
+    @Param({ "BERNOULLI", "GEOMETRIC" })
+    ProbabilitySupplier.Sampler sampler;
+
+    @Param({ "RANDOM", "LEGACY", "XOROSHIRO128PP", "L64X128MIX", "SPLITMIX" })
+    RandomEngine engine;
+
+    private ProbabilitySupplier supplier;
+    private final int[] ints = new int[ProbabilitySupplier.BLOCK_SIZE];
+    private final long[] longs = new long[ProbabilitySupplier.BLOCK_SIZE];
+    private final double[] doubles = new double[ProbabilitySupplier.BLOCK_SIZE];
+
+    @Setup
+    public void setup() {
+        supplier = sampler.create(Profiles.readme(), engine.create(42L));
+    }
+
+    @Benchmark
+    public double next() {
+        switch (type) {
+            case "INT":
+                return supplier.getAsInt();
+            case "LONG":
+                return supplier.getAsLong();
+            default:
+                return supplier.getAsDouble();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ProbabilitySupplier.BLOCK_SIZE)
+    public Object fill() {
+        switch (type) {
+            case "INT":
+                supplier.fill(ints, ints.length);
+                return ints;
+            case "LONG":
+                supplier.fill(longs, longs.length);
+                return longs;
+            default:
+                supplier.fill(doubles, doubles.length);
+                return doubles;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.edmison.HdrHistogram.cli.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.edmison.HdrHistogram.cli.HistogramCompare;
+import net.edmison.HdrHistogram.cli.HistogramOperations;
+import net.edmison.HdrHistogram.cli.ProbabilitySupplier;
+
+/**
+ * Measures the encode, decode and merge steps that the test command runs for
+ * every batch, on a batch histogram of 10,000 values from the README event
+ * profile, and the whole per-batch cycle through the comparison classes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({ "INT", "LONG", "DOUBLE" })
+    String type;
+
+    private EncodableHistogram batch;
+    private EncodableHistogram merged;
+    private ByteBuffer encoded;
+    private ByteBuffer compressed;
+    private ByteBuffer buffer;
+    private final long[] longs = new long[BATCH_SIZE];
+    private final double[] doubles = new double[BATCH_SIZE];
+    private HistogramCompare<?> compare;
+
+    @Setup
+    public void setup() {
+        ProbabilitySupplier supplier = ProbabilitySupplier.Sampler.BERNOULLI.create(Profiles.readme(),
+                new Random(42));
+        supplier.fill(longs, BATCH_SIZE);
+        supplier.fill(doubles, BATCH_SIZE);
+        switch (type) {
+            case "INT":
+                batch = record(new IntCountsHistogram(3));
+                merged = new IntCountsHistogram(3);
+                break;
+            case "LONG":
+                batch = record(new Histogram(3));
+                merged = new Histogram(3);
+                break;
+            default:
+                DoubleHistogram doubleHistogram = new DoubleHistogram(3);
+                for (double value : doubles) {
+                    doubleHistogram.recordValue(value);
+                }
+                batch = doubleHistogram;
+                merged = new DoubleHistogram(3);
+        }
+        buffer = ByteBuffer.allocate(batch.getNeededByteBufferCapacity());
+        encoded = ByteBuffer.allocate(batch.getNeededByteBufferCapacity());
+        encode(batch, encoded);
+        encoded.flip();
+        compressed = ByteBuffer.allocate(batch.getNeededByteBufferCapacity());
+        batch.encodeIntoCompressedByteBuffer(compressed, Deflater.DEFAULT_COMPRESSION);
+        compressed.flip();
+    }
+
+    /**
+     * Empties the merged histogram, and starts a new comparison, which add and
+     * reduceCycle would otherwise fill past the count an IntCountsHistogram can
+     * hold over the iterations.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        if (merged instanceof DoubleHistogram) {
+            ((DoubleHistogram) merged).reset();
+        } else {
+            ((AbstractHistogram) merged).reset();
+        }
+        switch (type) {
+            case "INT":
+                compare = new HistogramCompare<>(HistogramOperations.INT, BATCH_SIZE);
+                break;
+            case "LONG":
+                compare = new HistogramCompare<>(HistogramOperations.LONG, BATCH_SIZE);
+                break;
+            default:
+                compare = new HistogramCompare<>(HistogramOperations.DOUBLE, BATCH_SIZE);
+        }
+    }
+
+    private AbstractHistogram record(AbstractHistogram histogram) {
+        for (long value : longs) {
+            histogram.recordValue(value);
+        }
+        return histogram;
+    }
+
+    private static int encode(EncodableHistogram histogram, ByteBuffer buffer) {
+        if (histogram instanceof DoubleHistogram) {
+            return ((DoubleHistogram) histogram).encodeIntoByteBuffer(buffer);
+        }
+        return ((AbstractHistogram) histogram).encodeIntoByteBuffer(buffer);
+    }
+
+    @Benchmark
+    public int encode() {
+        buffer.clear();
+        return encode(batch, buffer);
+    }
+
+    @Benchmark
+    public int encodeCompressed() {
+        buffer.clear();
+        return batch.encodeIntoCompressedByteBuffer(buffer, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Benchmark
+    public Object decode() {
+        ByteBuffer in = encoded.duplicate();
+        switch (type) {
+            case "INT":
+                return IntCountsHistogram.decodeFromByteBuffer(in, 0);
+            case "LONG":
+                return Histogram.decodeFromByteBuffer(in, 0);
+            default:
+                return DoubleHistogram.decodeFromByteBuffer(in, 0);
+        }
+    }
+
+    @Benchmark
+    public Object decodeCompressed() throws DataFormatException {
+        ByteBuffer in = compressed.duplicate();
+        switch (type) {
+            case "INT":
+                return IntCountsHistogram.decodeFromCompressedByteBuffer(in, 0);
+            case "LONG":
+                return Histogram.decodeFromCompressedByteBuffer(in, 0);
+            default:
+                return DoubleHistogram.decodeFromCompressedByteBuffer(in, 0);
+        }
+    }
+
+    @Benchmark
+    public Object add() {
+        if (merged instanceof DoubleHistogram) {
+            ((DoubleHistogram) merged).add((DoubleHistogram) batch);
+        } else {
+            ((AbstractHistogram) merged).add((AbstractHistogram) batch);
+        }
+        return merged;
+    }
+
+    /**
+     * Records one batch of values through a comparison, which records each value
+     * into both of its histograms, then encodes, decodes and merges the batch.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void reduceCycle() {
+        if (type.equals("DOUBLE")) {
+            for (double value : doubles) {
+                compare.accrue(value);
+            }
+        } else {
+            for (long value : longs) {
+                compare.accrue(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.edmison.HdrHistogram.cli.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.edmison.HdrHistogram.cli.EventProbability;
+
+/**
+ * Event probability profiles shared by the benchmarks.
+ */
+final class Profiles {
+
+    private Profiles() {
+    }
+
+    /**
+     * The profile used in the README examples:
+     * <code>-b 50:15 -e 0.009:200:50 -e 0.002:400:60 -e 0.0008:600:120 -e 0.00005:2000:100 -e 0.00002:1000:200</code>
+     */
+    static List<EventProbability> readme() {
+        return List.of(new EventProbability(50d, 15d),
+                new EventProbability(0.009, 200d, 50d),
+                new EventProbability(0.002, 400d, 60d),
+                new EventProbability(0.0008, 600d, 120d),
+                new EventProbability(0.00005, 2000d, 100d),
+                new EventProbability(0.00002, 1000d, 200d));
+    }
+
+    /**
+     * A base latency plus a number of identical events with the same probability.
+     */
+    static List<EventProbability> uniform(int events, double probability) {
+        List<EventProbability> eventProbabilities = new ArrayList<>();
+        eventProbabilities.add(new EventProbability(50d, 15d));
+        for (int i = 0; i < events; i++) {
+            eventProbabilities.add(new EventProbability(probability, 200d, 20d));
+        }
+        return eventProbabilities;
+    }
+}
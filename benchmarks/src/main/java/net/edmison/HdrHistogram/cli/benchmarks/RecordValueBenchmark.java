@@ -0,0 +1,85 @@
+package net.edmison.HdrHistogram.cli.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.edmison.HdrHistogram.cli.ProbabilitySupplier;
+
+/**
+ * Measures the cost of recording a value into each of the histogram types the
+ * CLI uses, with values generated from the README event profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordValueBenchmark {
+
+    private static final int VALUES = 1 << 16;
+
+    private final long[] longs = new long[VALUES];
+    private final double[] doubles = new double[VALUES];
+    private final IntCountsHistogram intCountsHistogram = new IntCountsHistogram(3);
+    private final Histogram histogram = new Histogram(3);
+    private final DoubleHistogram doubleHistogram = new DoubleHistogram(3);
+
+    @Setup
+    public void setup() {
+        ProbabilitySupplier supplier = ProbabilitySupplier.Sampler.BERNOULLI.create(Profiles.readme(),
+                new Random(42));
+        supplier.fill(longs, VALUES);
+        supplier.fill(doubles, VALUES);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        intCountsHistogram.reset();
+        histogram.reset();
+        doubleHistogram.reset();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public Object intCountsHistogram() {
+        for (long value : longs) {
+            intCountsHistogram.recordValue(value);
+        }
+        return intCountsHistogram;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public Object histogram() {
+        for (long value : longs) {
+            histogram.recordValue(value);
+        }
+        return histogram;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public Object doubleHistogram() {
+        for (double value : doubles) {
+            doubleHistogram.recordValue(value);
+        }
+        return doubleHistogram;
+    }
+}
@@ -0,0 +1,225 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.zip.Deflater;
+
+import org.HdrHistogram.AbstractHistogram;
+
+/**
+ * Runs scenarios read one per line, in the format of url's --scenario
+ * option, on a pool of workers in a single JVM, and writes one result line
+ * per scenario, so a sweep of many scenarios only pays for the JVM's startup
+ * and warm-up once.
+ * <p>
+ * The lines are read ahead of their results, up to a few per worker, and the
+ * results are written in the order of the lines, each as soon as it and the
+ * ones before it are done. So the same runner serves a file, a long-lived
+ * co-process feeding it lines on standard input, or the connections of a Unix
+ * domain socket, each with lines and results of its own.
+ * <p>
+ * Each scenario's seed is drawn, in the order the lines are read, from the
+ * seed of the run, like the seeds of url's scenarios.
+ */
+public class BatchRunner implements AutoCloseable {
+
+    /**
+     * How each scenario's histogram is written.
+     */
+    public enum Output {
+        /**
+         * The count, the p50, p99, p99.9 and p99.99 percentiles, and the max.
+         */
+        SUMMARY,
+        /**
+         * The histogram, compressed and base64 encoded.
+         */
+        BLOB
+    }
+
+    /**
+     * The lines read ahead of their results, per worker.
+     */
+    private static final int READ_AHEAD = 4;
+
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final BiFunction<Scenario, Long, AbstractHistogram> recorder;
+    private final SplittableRandom seeds;
+    private final Output output;
+
+    /**
+     * @param workers  the number of scenarios run at once
+     * @param seed     the seed that each scenario's seed is drawn from, or null
+     *                 for a random seed
+     * @param recorder records the histogram of a scenario, from its seed
+     */
+    public BatchRunner(int workers, Long seed, Output output, BiFunction<Scenario, Long, AbstractHistogram> recorder) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be greater than or equal to 1");
+        }
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.workerCount = workers;
+        this.recorder = recorder;
+        this.seeds = (seed == null ? new SplittableRandom() : new SplittableRandom(seed));
+        this.output = output;
+    }
+
+    /**
+     * Runs the scenarios of the lines until the end of the input, skipping
+     * blank lines and # comments, and writes the result of each, or the error
+     * of an invalid scenario, as a line of its own.
+     *
+     * @return the number of scenarios that failed
+     */
+    public int run(BufferedReader in, PrintStream out) throws IOException {
+        BlockingQueue<Future<String>> results = new ArrayBlockingQueue<>(workerCount * READ_AHEAD);
+        Future<String> end = CompletableFuture.completedFuture(null);
+        int[] failures = new int[1];
+        Thread writer = new Thread(() -> {
+            try {
+                for (Future<String> result = results.take(); result != end; result = results.take()) {
+                    String line;
+                    try {
+                        line = result.get();
+                    } catch (ExecutionException cause) {
+                        line = "error: " + cause.getCause();
+                    }
+                    if (line.startsWith("error: ")) {
+                        failures[0]++;
+                    }
+                    out.println(line);
+                    out.flush();
+                }
+            } catch (InterruptedException cause) {
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-writer");
+        writer.start();
+        try {
+            int lineNumber = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                results.put(submit(line, lineNumber));
+            }
+            results.put(end);
+            writer.join();
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running scenarios", cause);
+        } finally {
+            // the end was never queued if reading failed, and the writer would wait for it forever
+            if (writer.isAlive()) {
+                writer.interrupt();
+            }
+        }
+        return failures[0];
+    }
+
+    private Future<String> submit(String line, int lineNumber) {
+        Scenario scenario;
+        try {
+            scenario = new ScenarioConverter().convert(line);
+        } catch (Exception cause) {
+            return CompletableFuture.completedFuture("error: line " + lineNumber + ": " + cause.getMessage());
+        }
+        long seed;
+        synchronized (seeds) {
+            seed = seeds.nextLong();
+        }
+        return workers.submit(() -> {
+            try {
+                return format(scenario.name(), recorder.apply(scenario, seed));
+            } catch (RuntimeException cause) {
+                return "error: line " + lineNumber + ": " + scenario.name() + ": " + cause.getMessage();
+            }
+        });
+    }
+
+    private String format(String name, AbstractHistogram histogram) {
+        switch (output) {
+            case SUMMARY:
+                return String.format("%s count=%d p50=%d p99=%d p99.9=%d p99.99=%d max=%d", name,
+                        histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                        histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                        histogram.getValueAtPercentile(99.99), histogram.getMaxValue());
+            case BLOB:
+                ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+                histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.DEFAULT_COMPRESSION);
+                buffer.flip();
+                return name + " " + StandardCharsets.ISO_8859_1.decode(Base64.getEncoder().encode(buffer));
+            default:
+                throw new RuntimeException("Unknown output: " + output);
+        }
+    }
+
+    /**
+     * Listens on a Unix domain socket, and runs the scenarios of each
+     * connection on a thread of its own, until the process is stopped. The
+     * socket file is deleted when the JVM exits.
+     *
+     * @param socket the path of the socket, which must not exist yet
+     * @param log    where connections and their failures are reported
+     */
+    public void serve(Path socket, PrintStream log) throws IOException {
+        if (Files.exists(socket)) {
+            throw new IllegalArgumentException("The socket " + socket + " already exists");
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            log.println("Serving scenarios on " + socket);
+            while (true) {
+                SocketChannel connection = server.accept();
+                Thread thread = new Thread(() -> serve(connection, log), "batch-connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    private void serve(SocketChannel connection, PrintStream log) {
+        try (connection;
+                BufferedReader in = new BufferedReader(Channels.newReader(connection, StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(Channels.newOutputStream(connection), false,
+                        StandardCharsets.UTF_8)) {
+            int failures = run(in, out);
+            if (failures > 0) {
+                log.printf("%d scenarios of a connection failed%n", failures);
+            }
+        } catch (IOException | RuntimeException cause) {
+            log.println("Connection failed: " + cause.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
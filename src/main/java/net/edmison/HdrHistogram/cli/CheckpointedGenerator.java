@@ -0,0 +1,247 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.EncodableHistogram;
+
+/**
+ * Generates values in segments, and checkpoints the combined target of the
+ * completed segments to a file after each one, so that an interrupted run can
+ * resume from its last checkpoint instead of starting over.
+ * <p>
+ * Each segment is generated by a ChunkedGenerator, from its own seed drawn in
+ * turn from the run's seed, so the values of each segment depend only on the
+ * run's seed and the segment's position, and not on whether the run was
+ * interrupted before it. A resumed run draws the seeds of the completed
+ * segments again, and skips them, so it produces the same result as a run that
+ * was never interrupted. The random generators themselves are never saved.
+ * <p>
+ * The checkpoint is a properties file, holding the configuration of the run,
+ * its seed, the number of values completed, and the target's state, e.g. a
+ * histogram encoded by encodeIntoCompressedByteBuffer and base64 encoded, as
+ * the url and merge sub-commands print them, so merge and query can read it. It's written to a temporary file
+ * and moved over the previous checkpoint, so an interruption while writing
+ * leaves the previous checkpoint whole.
+ */
+public class CheckpointedGenerator {
+
+    /**
+     * Saves a target into the checkpoint properties, and loads it back.
+     */
+    public interface State<T> {
+        void save(T target, Properties properties);
+
+        T load(Properties properties);
+    }
+
+    private static final String CONFIGURATION = "configuration";
+    private static final String SEED = "seed";
+    private static final String COMPLETED = "completed";
+    private static final String HISTOGRAM = "histogram";
+
+    private final List<EventProbability> eventProbabilities;
+    private final int threads;
+    private final ProbabilitySupplier.Sampler sampler;
+    private final RandomEngine engine;
+    private final long segmentSize;
+    private final Path checkpoint;
+    private final String configuration;
+    private final PrintStream progress;
+    private final GenerationStats stats;
+
+    /**
+     * @param segmentSize   the number of values generated between checkpoints
+     * @param checkpoint    the checkpoint file, resumed from if it exists
+     * @param configuration describes everything, other than the seed, that the
+     *                      values depend on, so that a checkpoint is only
+     *                      resumed by the same run
+     * @param progress      where the progress of each segment is reported
+     */
+    public CheckpointedGenerator(List<EventProbability> eventProbabilities, int threads,
+            ProbabilitySupplier.Sampler sampler, RandomEngine engine, long segmentSize, Path checkpoint,
+            String configuration, PrintStream progress) {
+        this(eventProbabilities, threads, sampler, engine, segmentSize, checkpoint, configuration, progress, null);
+    }
+
+    /**
+     * @param stats the statistics that each chunk adds its counts to, or null
+     */
+    public CheckpointedGenerator(List<EventProbability> eventProbabilities, int threads,
+            ProbabilitySupplier.Sampler sampler, RandomEngine engine, long segmentSize, Path checkpoint,
+            String configuration, PrintStream progress, GenerationStats stats) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("segmentSize must be greater than or equal to 1");
+        }
+        this.eventProbabilities = eventProbabilities;
+        this.threads = threads;
+        this.sampler = sampler;
+        this.engine = engine;
+        this.segmentSize = segmentSize;
+        this.checkpoint = checkpoint;
+        this.configuration = configuration;
+        this.progress = progress;
+        this.stats = stats;
+    }
+
+    /**
+     * Generates count values, segment by segment, resuming from the checkpoint
+     * if it exists.
+     *
+     * @param seed  the seed, or null for a random seed, which is saved in the
+     *              checkpoint for the rest of the run
+     * @param state saves and loads the combined target of the completed segments
+     * @throws IllegalArgumentException if the checkpoint was written by a run
+     *                                  with a different configuration or seed
+     */
+    public <T> T generate(Long seed, long count, Supplier<T> factory, ChunkedGenerator.ChunkTask<T> task,
+            BinaryOperator<T> combiner, State<T> state) {
+        long runSeed;
+        long completed;
+        T total;
+        if (Files.exists(checkpoint)) {
+            Properties properties = read(checkpoint);
+            if (!configuration.equals(properties.getProperty(CONFIGURATION))) {
+                throw new IllegalArgumentException("The checkpoint " + checkpoint
+                        + " was written by a different run: " + properties.getProperty(CONFIGURATION));
+            }
+            runSeed = Long.parseLong(properties.getProperty(SEED));
+            if (seed != null && seed != runSeed) {
+                throw new IllegalArgumentException("The checkpoint " + checkpoint + " was written with the seed "
+                        + runSeed);
+            }
+            completed = Long.parseLong(properties.getProperty(COMPLETED));
+            total = state.load(properties);
+            progress.printf("Resuming from %s at %d of %d values%n", checkpoint, completed, count);
+        } else {
+            runSeed = (seed == null ? new SplittableRandom().nextLong() : seed);
+            completed = 0;
+            total = null;
+        }
+
+        SplittableRandom seeds = new SplittableRandom(runSeed);
+        for (long skipped = 0; skipped < completed; skipped += segmentSize) {
+            seeds.nextLong();
+        }
+        long start = System.nanoTime();
+        long resumed = completed;
+        while (completed < count) {
+            long segmentCount = Math.min(segmentSize, count - completed);
+            ChunkedGenerator generator = new ChunkedGenerator(eventProbabilities, seeds.nextLong(), threads, sampler,
+                    engine, stats);
+            T segment = generator.generate(segmentCount, factory, task, combiner);
+            total = (total == null ? segment : combiner.apply(total, segment));
+            completed += segmentCount;
+            save(runSeed, completed, total, state);
+            reportProgress(completed, count, completed - resumed, System.nanoTime() - start);
+        }
+        return total;
+    }
+
+    private void reportProgress(long completed, long count, long generated, long nanos) {
+        double rate = generated * 1e9 / Math.max(1, nanos);
+        long remaining = (long) ((count - completed) / rate);
+        progress.printf("%d of %d values (%.1f%%), %.0f values/s, %s remaining, checkpointed to %s%n", completed,
+                count, completed * 100.0 / count, rate, formatSeconds(remaining), checkpoint);
+    }
+
+    private static String formatSeconds(long seconds) {
+        long hours = TimeUnit.SECONDS.toHours(seconds);
+        long minutes = TimeUnit.SECONDS.toMinutes(seconds) % 60;
+        return String.format("%d:%02d:%02d", hours, minutes, seconds % 60);
+    }
+
+    private <T> void save(long runSeed, long completed, T total, State<T> state) {
+        FlightEvents.Checkpoint event = new FlightEvents.Checkpoint();
+        event.begin();
+        Properties properties = new Properties();
+        properties.setProperty(CONFIGURATION, configuration);
+        properties.setProperty(SEED, Long.toString(runSeed));
+        properties.setProperty(COMPLETED, Long.toString(completed));
+        state.save(total, properties);
+        Path parent = checkpoint.toAbsolutePath().getParent();
+        try {
+            Path temporary = Files.createTempFile(parent, checkpoint.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "HdrHistogramCLI checkpoint");
+            }
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException cause) {
+            throw new UncheckedIOException("Unable to write the checkpoint " + checkpoint, cause);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.completed = completed;
+            event.file = checkpoint.toString();
+            event.commit();
+        }
+    }
+
+    private static Properties read(Path checkpoint) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        } catch (IOException cause) {
+            throw new UncheckedIOException("Unable to read the checkpoint " + checkpoint, cause);
+        }
+        for (String key : new String[] { CONFIGURATION, SEED, COMPLETED }) {
+            if (properties.getProperty(key) == null) {
+                throw new IllegalArgumentException("The checkpoint " + checkpoint + " has no " + key);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * The state of a target that is a single histogram.
+     */
+    public static <H extends EncodableHistogram> State<H> histogramState(HistogramOperations<H> operations) {
+        return new State<H>() {
+            @Override
+            public void save(H histogram, Properties properties) {
+                properties.setProperty(HISTOGRAM, encode(operations, histogram));
+            }
+
+            @Override
+            public H load(Properties properties) {
+                return decode(operations, properties.getProperty(HISTOGRAM));
+            }
+        };
+    }
+
+    /**
+     * Encodes the histogram compressed, and base64 encodes it.
+     */
+    static <H extends EncodableHistogram> String encode(HistogramOperations<H> operations, H histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = operations.encodeCompressed(histogram, buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    static <H extends EncodableHistogram> H decode(HistogramOperations<H> operations, String encoded) {
+        if (encoded == null) {
+            throw new IllegalArgumentException("The checkpoint has no histogram");
+        }
+        try {
+            return operations.decodeCompressed(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)));
+        } catch (DataFormatException | RuntimeException cause) {
+            throw new IllegalArgumentException("The checkpoint's histogram is corrupt", cause);
+        }
+    }
+}
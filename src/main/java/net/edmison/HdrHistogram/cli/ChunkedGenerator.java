@@ -0,0 +1,104 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Generates values in parallel by splitting the requested count into chunks.
+ * <p>
+ * Each chunk is generated on its own thread, from its own random stream split
+ * from the seed by the random engine, and accumulates into its own target
+ * (e.g. a histogram). Once all of the chunks have completed, their targets are
+ * combined in chunk order. Since the chunk sizes and the chunk random streams
+ * depend only on the count, the seed, the engine and the number of chunks, the
+ * same seed, engine and number of chunks always produce the same combined
+ * result.
+ */
+public class ChunkedGenerator {
+
+    /**
+     * Generates the values of a single chunk into its target.
+     */
+    @FunctionalInterface
+    public interface ChunkTask<T> {
+        void generate(ProbabilitySupplier supplier, long count, T target);
+    }
+
+    private final List<EventProbability> eventProbabilities;
+    private final Long seed;
+    private final int chunks;
+    private final ProbabilitySupplier.Sampler sampler;
+    private final RandomEngine engine;
+    private final GenerationStats stats;
+
+    public ChunkedGenerator(List<EventProbability> eventProbabilities, Long seed, int chunks,
+            ProbabilitySupplier.Sampler sampler, RandomEngine engine) {
+        this(eventProbabilities, seed, chunks, sampler, engine, null);
+    }
+
+    /**
+     * @param stats the statistics that each chunk adds its counts to, or null
+     */
+    public ChunkedGenerator(List<EventProbability> eventProbabilities, Long seed, int chunks,
+            ProbabilitySupplier.Sampler sampler, RandomEngine engine, GenerationStats stats) {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("chunks must be greater than or equal to 1");
+        }
+        this.eventProbabilities = eventProbabilities;
+        this.seed = seed;
+        this.chunks = chunks;
+        this.sampler = sampler;
+        this.engine = engine;
+        this.stats = stats;
+    }
+
+    /**
+     * Generates count values, split across the chunks.
+     *
+     * @param count    the total number of values to generate
+     * @param factory  creates the target for each chunk
+     * @param task     generates a chunk's values into its target
+     * @param combiner combines two chunk targets into one
+     * @return the combined target of all of the chunks
+     */
+    public <T> T generate(long count, Supplier<T> factory, ChunkTask<T> task, BinaryOperator<T> combiner) {
+        RandomGenerator[] generators = engine.split(seed, chunks);
+        ExecutorService executor = Executors.newFixedThreadPool(chunks);
+        try {
+            List<Future<T>> futures = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                long chunkCount = count / chunks + (chunk < count % chunks ? 1 : 0);
+                RandomGenerator random = generators[chunk];
+                futures.add(executor.submit(() -> {
+                    T target = factory.get();
+                    GenerationStats.generate(stats, sampler, eventProbabilities, random, chunkCount, target, task);
+                    return target;
+                }));
+            }
+
+            T result = null;
+            for (Future<T> future : futures) {
+                T target = future.get();
+                result = (result == null ? target : combiner.apply(result, target));
+            }
+            return result;
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating values", cause);
+        } catch (ExecutionException cause) {
+            if (cause.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) cause.getCause();
+            }
+            throw new RuntimeException(cause.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
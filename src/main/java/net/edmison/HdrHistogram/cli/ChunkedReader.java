@@ -0,0 +1,188 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Reads the values of a file in parallel by splitting it into chunks.
+ * <p>
+ * The file is memory-mapped, and split into at least one chunk per thread, and
+ * into chunks of at most MAX_CHUNK_SIZE bytes. Each chunk starts at the start
+ * of a value: after whitespace for text values, after a line end for a column
+ * of text values, at a multiple of the value size for binary values, and after
+ * the last byte of a varint value. The values of each chunk are parsed straight
+ * from the mapped memory into its own target (e.g. a histogram), and once all
+ * of the chunks have completed, their targets are combined in chunk order.
+ */
+public class ChunkedReader {
+
+    /**
+     * Reads the values of a single chunk into its target.
+     */
+    @FunctionalInterface
+    public interface ChunkTask<T> {
+        void read(ValueReader reader, T target);
+    }
+
+    static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private static final int SCAN_SIZE = 4096;
+
+    private final Path path;
+    private final ValueFormat format;
+    private final int valueBytes;
+    private final int column;
+    private final boolean header;
+    private final int threads;
+
+    /**
+     * @param path       the file to read
+     * @param format     the format of the values
+     * @param valueBytes the size of each binary value
+     * @param column     the column of comma separated text lines to read,
+     *                   counting from 1, or 0 to read whitespace separated text
+     *                   values
+     * @param header     whether to skip the first line of the file
+     * @param threads    the number of threads to read with
+     */
+    public ChunkedReader(Path path, ValueFormat format, int valueBytes, int column, boolean header, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than or equal to 1");
+        }
+        this.path = path;
+        this.format = format;
+        this.valueBytes = valueBytes;
+        this.column = column;
+        this.header = header;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads all of the values of the file, split across the chunks.
+     *
+     * @param factory  creates the target for each chunk
+     * @param task     reads a chunk's values into its target
+     * @param combiner combines two chunk targets into one
+     * @return the combined target of all of the chunks
+     */
+    public <T> T read(Supplier<T> factory, ChunkTask<T> task, BinaryOperator<T> combiner) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = boundaries(channel);
+            List<Future<T>> futures = new ArrayList<>(boundaries.length - 1);
+            for (int chunk = 0; chunk < boundaries.length - 1; chunk++) {
+                long start = boundaries[chunk];
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        boundaries[chunk + 1] - start);
+                boolean skipHeader = (header && chunk == 0);
+                futures.add(executor.submit(() -> {
+                    T target = factory.get();
+                    ValueReader reader = new ValueReader(mapped, format, column, path.toString(), start);
+                    if (skipHeader) {
+                        reader.skipLine();
+                    }
+                    task.read(reader, target);
+                    return target;
+                }));
+            }
+
+            T result = null;
+            for (Future<T> future : futures) {
+                T target = future.get();
+                result = (result == null ? target : combiner.apply(result, target));
+            }
+            return result;
+        } catch (IOException cause) {
+            throw new UncheckedIOException(cause);
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading values", cause);
+        } catch (ExecutionException cause) {
+            if (cause.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) cause.getCause();
+            }
+            throw new RuntimeException(cause.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the file into chunks that each start at the start of a value.
+     *
+     * @return the start of each chunk, followed by the end of the file
+     */
+    long[] boundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int chunks = (int) Math.max(threads, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long[] boundaries = new long[chunks + 1];
+        boundaries[chunks] = size;
+        // the header line always stays in the first chunk
+        long first = (header ? scan(channel, 0, size, b -> b == '\n') : 0);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            boundaries[chunk] = Math.max(Math.max(boundaries[chunk - 1], first),
+                    align(channel, size / chunks * chunk, size));
+        }
+        return boundaries;
+    }
+
+    private long align(FileChannel channel, long position, long size) throws IOException {
+        if (format == ValueFormat.BINARY_LE) {
+            return position - position % valueBytes;
+        }
+        if (position == 0) {
+            return 0;
+        }
+        // a value starts straight after the byte that ends the previous one
+        return scan(channel, position - 1, size, this::endsValue);
+    }
+
+    /**
+     * Finds the first byte from the position on that matches.
+     *
+     * @return the position after the matching byte, or the size if none match
+     */
+    private static long scan(FileChannel channel, long position, long size, BytePredicate matches)
+            throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (matches.test(scan.get(i))) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    @FunctionalInterface
+    private interface BytePredicate {
+        boolean test(byte b);
+    }
+
+    private boolean endsValue(byte b) {
+        if (format == ValueFormat.VARINT) {
+            return (b & 0x80) == 0;
+        }
+        return (column > 0 ? b == '\n' : ValueReader.isWhitespace(b));
+    }
+}
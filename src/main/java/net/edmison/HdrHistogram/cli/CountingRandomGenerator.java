@@ -0,0 +1,69 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.function.ToDoubleFunction;
+import java.util.random.RandomGenerator;
+
+/**
+ * Counts the values drawn from a random generator, for the statistics of a
+ * run. Only wraps the generators of runs whose statistics are collected, so
+ * other runs draw from their generators directly.
+ * <p>
+ * Every method passes straight through to the generator, so the values drawn
+ * are the same as without the counts. Gaussian values are drawn as the
+ * generator's engine draws them, but through this generator, so each one is
+ * counted once, and the uniform values it takes underneath are counted too.
+ */
+final class CountingRandomGenerator implements RandomGenerator {
+
+    private final RandomGenerator random;
+    private final ToDoubleFunction<RandomGenerator> gaussian;
+    long uniformDraws = 0;
+    long gaussianDraws = 0;
+
+    CountingRandomGenerator(RandomGenerator random) {
+        this.random = random;
+        this.gaussian = RandomEngine.gaussianOf(random);
+    }
+
+    @Override
+    public long nextLong() {
+        uniformDraws++;
+        return random.nextLong();
+    }
+
+    @Override
+    public int nextInt() {
+        uniformDraws++;
+        return random.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        uniformDraws++;
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public double nextDouble() {
+        uniformDraws++;
+        return random.nextDouble();
+    }
+
+    @Override
+    public float nextFloat() {
+        uniformDraws++;
+        return random.nextFloat();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        uniformDraws++;
+        return random.nextBoolean();
+    }
+
+    @Override
+    public double nextGaussian() {
+        gaussianDraws++;
+        return gaussian.applyAsDouble(this);
+    }
+}
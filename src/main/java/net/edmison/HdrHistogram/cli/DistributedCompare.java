@@ -0,0 +1,249 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Merges the batch histograms that worker processes stream over loopback TCP,
+ * as each arrives, for comparing with a histogram of all of the values.
+ * <p>
+ * Each worker connects, sends its shard number, and then sends each batch as
+ * a frame: the length of the batch's compressed encoding, as written by
+ * encodeIntoCompressedByteBuffer, followed by the encoding itself. A length of
+ * -1 ends the worker's stream. Each connection is read on a thread of its own,
+ * which decodes every frame as soon as it's read and adds it to the merged
+ * histogram, so the merge keeps up with the workers instead of waiting for all
+ * of them to finish.
+ */
+public class DistributedCompare<H extends EncodableHistogram> {
+
+    /**
+     * The frame length that ends a worker's stream.
+     */
+    static final int END = -1;
+
+    /**
+     * How long to wait between checks that the workers are still running,
+     * while waiting for them to connect.
+     */
+    private static final int ACCEPT_TIMEOUT_MILLIS = 1000;
+
+    private final HistogramOperations<H> operations;
+    private final H merged;
+    private final Histogram mergeNanos = new Histogram(3);
+    private long frames = 0;
+    private long bytesReceived = 0;
+    private long readNanos = 0;
+
+    public static DistributedCompare<Histogram> ofLongs() {
+        return new DistributedCompare<>(HistogramOperations.LONG);
+    }
+
+    public static DistributedCompare<DoubleHistogram> ofDoubles() {
+        return new DistributedCompare<>(HistogramOperations.DOUBLE);
+    }
+
+    private DistributedCompare(HistogramOperations<H> operations) {
+        this.operations = operations;
+        this.merged = operations.create();
+    }
+
+    /**
+     * Records the values of a worker's shard into batch histograms, and sends
+     * each full batch to the coordinator.
+     */
+    public static class Sender<H extends EncodableHistogram> implements AutoCloseable {
+        private final HistogramOperations<H> operations;
+        private final int batchSize;
+        private final DataOutputStream out;
+        private final H batch;
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+        private int count = 0;
+
+        public Sender(HistogramOperations<H> operations, int batchSize, Socket socket, int shard) throws IOException {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be greater than or equal to 1");
+            }
+            this.operations = operations;
+            this.batchSize = batchSize;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            this.batch = operations.create();
+            out.writeInt(shard);
+        }
+
+        public void accrue(long value) {
+            operations.recordValue(batch, value);
+            accrued();
+        }
+
+        public void accrue(double value) {
+            operations.recordValue(batch, value);
+            accrued();
+        }
+
+        private void accrued() {
+            if (++count == batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (count > 0) {
+                int needed = batch.getNeededByteBufferCapacity();
+                if (buffer.capacity() < needed) {
+                    buffer = ByteBuffer.allocate(needed);
+                }
+                buffer.clear();
+                int length = operations.encodeCompressed(batch, buffer);
+                try {
+                    out.writeInt(length);
+                    out.write(buffer.array(), 0, length);
+                } catch (IOException cause) {
+                    throw new UncheckedIOException("Unable to send a batch to the coordinator", cause);
+                }
+                operations.reset(batch);
+                count = 0;
+            }
+        }
+
+        /**
+         * Sends the last partial batch, and ends the stream.
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+            out.writeInt(END);
+            out.flush();
+        }
+    }
+
+    /**
+     * Accepts a connection from each of the workers, and merges their batches
+     * as they arrive, until every worker has ended its stream.
+     *
+     * @param server  the loopback socket that the workers connect to
+     * @param workers the number of workers
+     * @param failed  whether a worker has failed, checked while waiting for
+     *                the workers to connect
+     */
+    public void receive(ServerSocket server, int workers, BooleanSupplier failed) throws IOException {
+        server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+        List<Thread> readers = new ArrayList<>(workers);
+        List<Throwable> failures = new ArrayList<>();
+        try {
+            while (readers.size() < workers) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException timeout) {
+                    if (failed.getAsBoolean()) {
+                        throw new IllegalStateException("A worker failed before connecting");
+                    }
+                    continue;
+                }
+                Thread reader = new Thread(() -> read(socket), "merge-reader-" + readers.size());
+                reader.setUncaughtExceptionHandler((thread, cause) -> {
+                    synchronized (failures) {
+                        failures.add(cause);
+                    }
+                });
+                readers.add(reader);
+                reader.start();
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while merging the workers' histograms", cause);
+        }
+        if (!failures.isEmpty()) {
+            Throwable cause = failures.get(0);
+            throw (cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause));
+        }
+    }
+
+    private void read(Socket socket) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(),
+                1 << 16))) {
+            int shard = in.readInt();
+            long received = Integer.BYTES;
+            // only the time from each frame's length to its decode, not waiting for the worker to send it
+            long readTime = 0;
+            byte[] frame = new byte[0];
+            for (int length = in.readInt(); length != END; length = in.readInt()) {
+                if (length < 0) {
+                    throw new IllegalStateException("Worker " + shard + " sent a frame of " + length + " bytes");
+                }
+                long started = System.nanoTime();
+                if (frame.length < length) {
+                    frame = new byte[length];
+                }
+                in.readFully(frame, 0, length);
+                received += Integer.BYTES + length;
+                long arrived = System.nanoTime();
+                H batch;
+                try {
+                    batch = operations.decodeCompressed(ByteBuffer.wrap(frame, 0, length));
+                } catch (DataFormatException | IllegalArgumentException cause) {
+                    throw new IllegalStateException("Worker " + shard + " sent a corrupt histogram", cause);
+                }
+                readTime += System.nanoTime() - started;
+                synchronized (this) {
+                    operations.add(merged, batch);
+                    mergeNanos.recordValue(System.nanoTime() - arrived);
+                    frames++;
+                }
+            }
+            synchronized (this) {
+                bytesReceived += received + Integer.BYTES;
+                readNanos += readTime;
+            }
+        } catch (IOException cause) {
+            throw new UncheckedIOException("Unable to read a worker's histograms", cause);
+        }
+    }
+
+    /**
+     * The merge of all of the workers' batches.
+     */
+    public synchronized H merged() {
+        return merged;
+    }
+
+    /**
+     * Prints the number of batches received, the ingest bandwidth, and the
+     * latency of each merge, from the batch arriving to it being added to the
+     * merged histogram. The bandwidth is of the time spent reading and decoding
+     * the frames, summed over the connections, so it leaves out the time spent
+     * waiting for the workers to start and to generate their values.
+     */
+    public synchronized void printStatistics(PrintStream out) {
+        double seconds = Math.max(1, readNanos) / 1e9;
+        out.printf("Batches: %d, bytes received: %d (%.1f bytes per batch)%n", frames, bytesReceived,
+                frames == 0 ? 0.0 : (double) bytesReceived / frames);
+        out.printf("Read and decoded in %d ms: %.1f MB per second, %.0f batches per second%n",
+                TimeUnit.NANOSECONDS.toMillis(readNanos), bytesReceived / seconds / 1e6, frames / seconds);
+        out.printf("Merge latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                mergeNanos.getValueAtPercentile(50) / 1e3, mergeNanos.getValueAtPercentile(99) / 1e3,
+                mergeNanos.getMaxValue() / 1e3);
+    }
+}
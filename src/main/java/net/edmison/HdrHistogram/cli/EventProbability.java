@@ -1,7 +1,7 @@
 package net.edmison.HdrHistogram.cli;
 
 import java.util.Objects;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 import picocli.CommandLine.ITypeConverter;
 
@@ -36,7 +36,7 @@ public record EventProbability(Double probability, Boolean flatten, Double mean,
      * @param random the random number generator to use
      * @return a double value based on the probability, mean and deviation
      */
-    public double nextDouble(Random random) {
+    public double nextDouble(RandomGenerator random) {
         double value = 0;
         /*
          * The Random.nextGaussian() method returns "Gaussian ("normally")
@@ -54,13 +54,67 @@ public record EventProbability(Double probability, Boolean flatten, Double mean,
          * and does not create a latency impact that is less than 0.
          */
         if (random.nextDouble() <= probability) {
-            double gaussian = flatten ? Math.abs(random.nextGaussian()) : random.nextGaussian();
-            value = (mean + (gaussian * deviation));
+            value = nextImpact(random);
         }
         return value;
     }
 
-    public long nextLong(Random random) {
+    /**
+     * Calculates a gaussian latency impact based on the mean and deviation, given
+     * that this event has occurred, with the generator's own gaussian values,
+     * which its RandomEngine chooses how to draw.
+     * 
+     * @param random the random number generator to use
+     * @return a double value based on the mean and deviation
+     */
+    public double nextImpact(RandomGenerator random) {
+        double gaussian = random.nextGaussian();
+        if (flatten) {
+            gaussian = Math.abs(gaussian);
+        }
+        return (mean + (gaussian * deviation));
+    }
+
+    public long nextLongImpact(RandomGenerator random) {
+        double value = 0;
+        do {
+            value = Math.max(0.0, nextImpact(random));
+        } while (value > (double) Long.MAX_VALUE);
+        return (long) value;
+    }
+
+    public int nextIntImpact(RandomGenerator random) {
+        double value = 0;
+        do {
+            value = Math.max(0.0, nextImpact(random));
+        } while (value > (double) Integer.MAX_VALUE);
+        return (int) value;
+    }
+
+    /**
+     * Calculates the number of trials that pass before this event next occurs.
+     * <p>
+     * Each trial is an independent Bernoulli trial with this event's probability,
+     * so the gap until the next occurrence is geometrically distributed, and can
+     * be drawn with a single random value by inverting its distribution function.
+     * 
+     * @param random the random number generator to use
+     * @return the number of trials in which this event does not occur before the
+     *         trial in which it does, or Long.MAX_VALUE if it never occurs
+     */
+    public long nextGap(RandomGenerator random) {
+        if (probability >= 1.0) {
+            return 0;
+        }
+        if (probability <= 0.0) {
+            return Long.MAX_VALUE;
+        }
+        // 1.0 - nextDouble() is in (0.0, 1.0], so the logarithm is always finite
+        double gap = Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log1p(-probability));
+        return gap >= (double) Long.MAX_VALUE ? Long.MAX_VALUE : (long) gap;
+    }
+
+    public long nextLong(RandomGenerator random) {
         double value = 0;
         do {
             value = Math.max(0.0, nextDouble(random));
@@ -68,7 +122,7 @@ public record EventProbability(Double probability, Boolean flatten, Double mean,
         return (long) value;
     }
 
-    public int nextInt(Random random) {
+    public int nextInt(RandomGenerator random) {
         double value = 0;
         do {
             value = Math.max(0.0, nextDouble(random));
@@ -0,0 +1,221 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.List;
+
+import org.HdrHistogram.AbstractHistogram;
+
+/**
+ * Computes the distribution of the integer values that ProbabilitySupplier
+ * generates, without generating any of them.
+ * <p>
+ * Each integer value is the sum of one value per event, and each event's value
+ * is independent of the others: 0 if the event doesn't occur, and otherwise
+ * its Gaussian impact, clamped at 0 and rounded down. So the probability of
+ * each integer value of an event follows from the normal distribution
+ * function, and the distribution of the sum is the convolution of the events'
+ * distributions. Values whose sum is 0 are drawn again by ProbabilitySupplier,
+ * so the probability of 0 is removed at the end, and the rest scaled up to
+ * match.
+ * <p>
+ * Each event's distribution is a probability of 0, and a band of values around
+ * its mean, out to 10 standard deviations, beyond which the probabilities are
+ * below 1e-23. So the convolution costs the number of values in the sum times
+ * the width of each band, and keeps the full relative precision of the tail
+ * probabilities, unlike an FFT.
+ */
+public final class ExactDistribution {
+
+    /**
+     * The most values the distribution can hold, from 0 to the largest value.
+     */
+    public static final int MAX_VALUES = 1 << 24;
+
+    private static final double TAIL_DEVIATIONS = 10;
+
+    /*
+     * log(sqrt(2 * pi)), for the normal density.
+     */
+    private static final double LOG_SQRT_2_PI = 0.91893853320467274178;
+
+    private final double[] probabilities;
+
+    private ExactDistribution(double[] probabilities) {
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * Computes the distribution of the sums of the events' values.
+     *
+     * @throws IllegalArgumentException if the values can reach more than
+     *                                  MAX_VALUES
+     */
+    public static ExactDistribution of(List<EventProbability> eventProbabilities) {
+        long size = 1;
+        for (EventProbability eventProbability : eventProbabilities) {
+            size += bandEnd(eventProbability);
+            if (size > MAX_VALUES) {
+                throw new IllegalArgumentException("The values can reach more than " + MAX_VALUES
+                        + ", which is too many to compute exactly");
+            }
+        }
+
+        double[] distribution = new double[(int) size];
+        distribution[0] = 1.0;
+        int length = 1;
+        for (EventProbability eventProbability : eventProbabilities) {
+            length = convolve(distribution, length, eventProbability);
+        }
+
+        // a sum of 0 is drawn again
+        double positive = 1.0 - distribution[0];
+        if (!(positive > 0)) {
+            throw new IllegalArgumentException("The events never produce a value greater than 0");
+        }
+        distribution[0] = 0;
+        for (int i = 1; i < length; i++) {
+            distribution[i] /= positive;
+        }
+        return new ExactDistribution(distribution);
+    }
+
+    /**
+     * The probability of the value.
+     */
+    public double probability(long value) {
+        return (value >= 0 && value < probabilities.length ? probabilities[(int) value] : 0);
+    }
+
+    /**
+     * The largest value with a probability greater than 0.
+     */
+    public long maxValue() {
+        int max = probabilities.length - 1;
+        while (max > 0 && probabilities[max] == 0) {
+            max--;
+        }
+        return max;
+    }
+
+    /**
+     * Records count values with this distribution, as the histogram of count
+     * generated values would hold them, each value's count rounded from the
+     * expected count. The counts are rounded from the cumulative expected
+     * counts, so that they add up to count exactly.
+     */
+    public <H extends AbstractHistogram> H record(H histogram, long count) {
+        double cumulative = 0;
+        long recorded = 0;
+        for (int value = 1; value < probabilities.length; value++) {
+            cumulative += probabilities[value];
+            long total = Math.min(count, Math.round(cumulative * count));
+            if (total > recorded) {
+                histogram.recordValueWithCount(value, total - recorded);
+                recorded = total;
+            }
+        }
+        if (recorded < count) {
+            // the rounding errors of the cumulative probabilities
+            histogram.recordValueWithCount(maxValue(), count - recorded);
+        }
+        return histogram;
+    }
+
+    /**
+     * Convolves the first length probabilities of the distribution with the
+     * event's distribution, in place.
+     *
+     * @return the length of the convolved distribution
+     */
+    private static int convolve(double[] distribution, int length, EventProbability eventProbability) {
+        double probability = eventProbability.probability();
+        int bandStart = bandStart(eventProbability);
+        int bandEnd = bandEnd(eventProbability);
+        double[] band = new double[bandEnd - bandStart + 1];
+        for (int value = bandStart; value <= bandEnd; value++) {
+            band[value - bandStart] = probability * impactProbability(eventProbability, value, value + 1.0);
+        }
+        double zero = (1.0 - probability)
+                + probability * impactProbability(eventProbability, Double.NEGATIVE_INFINITY, 1.0);
+
+        // from the top down, so that each sum only reads the values below it
+        int convolvedLength = length + bandEnd;
+        for (int sum = convolvedLength - 1; sum >= 0; sum--) {
+            double total = (sum < length ? distribution[sum] * zero : 0);
+            int first = Math.max(bandStart, sum - length + 1);
+            int last = Math.min(bandEnd, sum);
+            for (int value = first; value <= last; value++) {
+                total += distribution[sum - value] * band[value - bandStart];
+            }
+            distribution[sum] = total;
+        }
+        return convolvedLength;
+    }
+
+    /*
+     * The smallest value above 0 the event's impact can have, and the largest,
+     * at least 1 so that the band is never empty.
+     */
+    private static int bandStart(EventProbability eventProbability) {
+        double low = eventProbability.mean() - (eventProbability.flatten() ? 0 : TAIL_DEVIATIONS)
+                * eventProbability.deviation();
+        return (int) Math.max(1, Math.min(Math.floor(low), bandEnd(eventProbability)));
+    }
+
+    private static int bandEnd(EventProbability eventProbability) {
+        double high = eventProbability.mean() + TAIL_DEVIATIONS * eventProbability.deviation();
+        return (int) Math.max(1, Math.min(Math.ceil(high), MAX_VALUES));
+    }
+
+    /**
+     * The probability that the event's impact, given that it occurs, is at least
+     * low and below high.
+     */
+    static double impactProbability(EventProbability eventProbability, double low, double high) {
+        double lowZ = (low - eventProbability.mean()) / eventProbability.deviation();
+        double highZ = (high - eventProbability.mean()) / eventProbability.deviation();
+        if (eventProbability.flatten()) {
+            // the impact is the mean plus a half-normal value
+            lowZ = Math.max(lowZ, 0);
+            return (highZ <= lowZ ? 0 : 2 * (upperTail(lowZ) - upperTail(highZ)));
+        }
+        if (lowZ >= 0) {
+            return upperTail(lowZ) - upperTail(highZ);
+        }
+        if (highZ <= 0) {
+            return upperTail(-highZ) - upperTail(-lowZ);
+        }
+        return 1.0 - upperTail(-lowZ) - upperTail(highZ);
+    }
+
+    /**
+     * The probability that a standard normal value is above x, with full
+     * relative precision far out into the upper tail.
+     */
+    static double upperTail(double x) {
+        if (x == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+        if (x < 0) {
+            return 1.0 - upperTail(-x);
+        }
+        if (x > 3) {
+            // the continued fraction for the Mills ratio, evaluated from the end
+            double fraction = x;
+            for (int k = 100; k >= 1; k--) {
+                fraction = x + k / fraction;
+            }
+            return Math.exp(-0.5 * x * x - LOG_SQRT_2_PI) / fraction;
+        }
+        // Marsaglia's series for the normal distribution function
+        double square = x * x;
+        double sum = x;
+        double term = x;
+        double previous = 0;
+        for (int i = 3; sum != previous; i += 2) {
+            previous = sum;
+            term *= square / i;
+            sum += term;
+        }
+        return 0.5 - sum * Math.exp(-0.5 * square - LOG_SQRT_2_PI);
+    }
+}
@@ -0,0 +1,80 @@
+package net.edmison.HdrHistogram.cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder events of the generation and histogram hot paths.
+ * <p>
+ * Each event covers a chunk of work, never a single value, and is only
+ * committed while a recording has it enabled; until then, creating one and
+ * checking isEnabled() is all that it costs. They're enabled with the
+ * profile of a recording, e.g.
+ * {@code -XX:StartFlightRecording=settings=profile,filename=run.jfr}, and
+ * appear under HdrHistogramCLI, next to the JDK's own allocation and garbage
+ * collection events.
+ */
+final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    @Name("net.edmison.HdrHistogram.Generation")
+    @Label("Value Generation")
+    @Category("HdrHistogramCLI")
+    @Description("A chunk of values generated on one thread")
+    @StackTrace(false)
+    static final class Generation extends Event {
+        @Label("Values")
+        long values;
+
+        @Label("Uniform Draws")
+        @Description("The uniform values drawn from the random generator")
+        long uniformDraws;
+
+        @Label("Gaussian Draws")
+        @Description("The Gaussian values drawn for the latency impacts")
+        long gaussianDraws;
+
+        @Label("Retries")
+        @Description("The values drawn again because they weren't positive")
+        long retries;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("net.edmison.HdrHistogram.Merge")
+    @Label("Histogram Merge")
+    @Category("HdrHistogramCLI")
+    @Description("Encoded histograms decoded and added to the merged histogram: one batch of a linear "
+            + "merge, or all of the batches of a tree reduction")
+    @StackTrace(false)
+    static final class Merge extends Event {
+        @Label("Merges")
+        long merges;
+
+        @Label("Bytes Encoded")
+        @DataAmount
+        long bytesEncoded;
+    }
+
+    @Name("net.edmison.HdrHistogram.Checkpoint")
+    @Label("Checkpoint")
+    @Category("HdrHistogramCLI")
+    @Description("The combined target of the completed segments written to the checkpoint file")
+    @StackTrace(false)
+    static final class Checkpoint extends Event {
+        @Label("Values Completed")
+        long completed;
+
+        @Label("File")
+        String file;
+    }
+}
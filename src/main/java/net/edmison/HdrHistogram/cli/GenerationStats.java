@@ -0,0 +1,142 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/**
+ * The statistics of a run's value generation and histogram merges: how many
+ * values were generated and how fast, the random draws and retries each value
+ * took, the merges and the bytes they encoded, and the memory allocated and
+ * garbage collected along the way.
+ * <p>
+ * Chunks of values add their counts once they complete, from whichever thread
+ * generated them, so nothing is shared while the values are generated. A run
+ * without statistics, and without a recording of the Generation event, draws
+ * from its random generators directly and counts nothing at all.
+ */
+public final class GenerationStats {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder values = new LongAdder();
+    private final LongAdder uniformDraws = new LongAdder();
+    private final LongAdder gaussianDraws = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder bytesEncoded = new LongAdder();
+    private final long start = System.nanoTime();
+    private final long startCollections;
+    private final long startCollectionMillis;
+
+    public GenerationStats() {
+        long[] collections = collections();
+        this.startCollections = collections[0];
+        this.startCollectionMillis = collections[1];
+    }
+
+    /**
+     * Generates a chunk of values into the target with the task. With
+     * statistics, or with a recording of the Generation event, the chunk's
+     * random draws, retries and allocations are counted, into the statistics
+     * and into the event; the values are the same either way.
+     *
+     * @param stats the statistics of the run, or null if it has none
+     */
+    static <T> void generate(GenerationStats stats, ProbabilitySupplier.Sampler sampler,
+            List<EventProbability> eventProbabilities, RandomGenerator random, long count, T target,
+            ChunkedGenerator.ChunkTask<T> task) {
+        FlightEvents.Generation event = new FlightEvents.Generation();
+        if (stats == null && !event.isEnabled()) {
+            task.generate(sampler.create(eventProbabilities, random), count, target);
+            return;
+        }
+        CountingRandomGenerator counting = new CountingRandomGenerator(random);
+        ProbabilitySupplier supplier = sampler.create(eventProbabilities, counting);
+        long allocatedBefore = allocatedBytes();
+        event.begin();
+        task.generate(supplier, count, target);
+        event.end();
+        long allocatedBytes = Math.max(0, allocatedBytes() - allocatedBefore);
+
+        if (event.shouldCommit()) {
+            event.values = count;
+            event.uniformDraws = counting.uniformDraws;
+            event.gaussianDraws = counting.gaussianDraws;
+            event.retries = supplier.retries();
+            event.allocated = allocatedBytes;
+            event.commit();
+        }
+        if (stats != null) {
+            stats.chunks.increment();
+            stats.values.add(count);
+            stats.uniformDraws.add(counting.uniformDraws);
+            stats.gaussianDraws.add(counting.gaussianDraws);
+            stats.retries.add(supplier.retries());
+            stats.allocated.add(allocatedBytes);
+        }
+    }
+
+    /**
+     * Adds the merges of a comparison's histograms, and the bytes they encoded.
+     */
+    public void merged(long mergeCount, long bytes) {
+        merges.add(mergeCount);
+        bytesEncoded.add(bytes);
+    }
+
+    /**
+     * The bytes allocated by the current thread so far, or 0 if the JVM can't
+     * tell.
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Prints the statistics of the run so far.
+     */
+    public void print(PrintStream out) {
+        long nanos = Math.max(1, System.nanoTime() - start);
+        double seconds = nanos / 1e9;
+        long valueCount = values.sum();
+        out.printf("Generated %d values in %d chunks in %d ms: %.0f values per second%n", valueCount, chunks.sum(),
+                TimeUnit.NANOSECONDS.toMillis(nanos), valueCount / seconds);
+        out.printf("Random draws: %d uniform (%.2f per value), %d gaussian (%.2f per value)%n", uniformDraws.sum(),
+                perValue(uniformDraws.sum(), valueCount), gaussianDraws.sum(),
+                perValue(gaussianDraws.sum(), valueCount));
+        out.printf("Retries: %d (%.4f per value)%n", retries.sum(), perValue(retries.sum(), valueCount));
+        out.printf("Merges: %d, bytes encoded: %d%n", merges.sum(), bytesEncoded.sum());
+        out.printf("Allocated while generating: %.1f MB (%.1f MB per second)%n", allocated.sum() / 1e6,
+                allocated.sum() / 1e6 / seconds);
+        long[] collections = collections();
+        out.printf("Garbage collections: %d, %d ms paused%n", collections[0] - startCollections,
+                collections[1] - startCollectionMillis);
+    }
+
+    /**
+     * The number of garbage collections so far, and the milliseconds they took.
+     */
+    private static long[] collections() {
+        long[] collections = new long[2];
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections[0] += Math.max(0, collector.getCollectionCount());
+            collections[1] += Math.max(0, collector.getCollectionTime());
+        }
+        return collections;
+    }
+
+    private static double perValue(long total, long valueCount) {
+        return (valueCount == 0 ? 0.0 : (double) total / valueCount);
+    }
+}
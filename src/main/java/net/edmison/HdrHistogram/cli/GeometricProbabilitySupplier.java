@@ -0,0 +1,227 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A ProbabilitySupplier that skips ahead to the next occurrence of each event,
+ * rather than drawing a random value for every event in every sample.
+ * <p>
+ * Whether an event occurs in a given sample is an independent Bernoulli trial,
+ * so the number of samples between its occurrences is geometrically
+ * distributed. This supplier draws that gap once per occurrence, and keeps the
+ * sample number at which each event next occurs. Samples in which no event
+ * occurs only pay for the events that always occur (e.g. the base latency),
+ * so the cost of a sample depends on how many events actually occur in it,
+ * rather than how many events are configured. The values it produces have the
+ * same distribution as those of a ProbabilitySupplier, but not the same
+ * sequence for a given seed.
+ * <p>
+ * Blocks of values are filled one event at a time: each event that always
+ * occurs adds its impact to every value of the block in a tight loop, and each
+ * other event jumps straight from one of its occurrences in the block to the
+ * next.
+ */
+public class GeometricProbabilitySupplier extends ProbabilitySupplier {
+
+    private final EventProbability[] alwaysEvents;
+    private final EventProbability[] sometimesEvents;
+    private final long[] nextOccurrences;
+    private long sample = 0;
+    private long nextOccurrence = Long.MAX_VALUE;
+
+    public GeometricProbabilitySupplier(List<EventProbability> eventProbabilities, RandomGenerator random) {
+        super(eventProbabilities, random);
+        this.alwaysEvents = eventProbabilities.stream()
+                .filter(event -> event.probability() >= 1.0)
+                .toArray(EventProbability[]::new);
+        this.sometimesEvents = eventProbabilities.stream()
+                .filter(event -> event.probability() < 1.0)
+                .toArray(EventProbability[]::new);
+        this.nextOccurrences = new long[sometimesEvents.length];
+        for (int i = 0; i < sometimesEvents.length; i++) {
+            nextOccurrences[i] = sometimesEvents[i].nextGap(random);
+            nextOccurrence = Math.min(nextOccurrence, nextOccurrences[i]);
+        }
+    }
+
+    @Override
+    public int getAsInt() {
+        return nextInt(0);
+    }
+
+    @Override
+    public long getAsLong() {
+        return nextLong(0);
+    }
+
+    @Override
+    public double getAsDouble() {
+        return nextDouble(0.0);
+    }
+
+    @Override
+    public void fill(int[] block, int length) {
+        Arrays.fill(block, 0, length, 0);
+        for (EventProbability eventProbability : alwaysEvents) {
+            for (int i = 0; i < length; i++) {
+                block[i] += eventProbability.nextIntImpact(random);
+            }
+        }
+        long end = sample + length;
+        for (int event = 0; event < sometimesEvents.length; event++) {
+            EventProbability eventProbability = sometimesEvents[event];
+            long occurrence = nextOccurrences[event];
+            for (; occurrence < end; occurrence = following(occurrence, eventProbability.nextGap(random))) {
+                block[(int) (occurrence - sample)] += eventProbability.nextIntImpact(random);
+            }
+            nextOccurrences[event] = occurrence;
+        }
+        skipTo(end);
+        for (int i = 0; i < length; i++) {
+            if (block[i] <= 0 && retry()) {
+                block[i] = nextInt(block[i]);
+            }
+        }
+    }
+
+    @Override
+    public void fill(long[] block, int length) {
+        Arrays.fill(block, 0, length, 0L);
+        for (EventProbability eventProbability : alwaysEvents) {
+            for (int i = 0; i < length; i++) {
+                block[i] += eventProbability.nextLongImpact(random);
+            }
+        }
+        long end = sample + length;
+        for (int event = 0; event < sometimesEvents.length; event++) {
+            EventProbability eventProbability = sometimesEvents[event];
+            long occurrence = nextOccurrences[event];
+            for (; occurrence < end; occurrence = following(occurrence, eventProbability.nextGap(random))) {
+                block[(int) (occurrence - sample)] += eventProbability.nextLongImpact(random);
+            }
+            nextOccurrences[event] = occurrence;
+        }
+        skipTo(end);
+        for (int i = 0; i < length; i++) {
+            if (block[i] <= 0 && retry()) {
+                block[i] = nextLong(block[i]);
+            }
+        }
+    }
+
+    @Override
+    public void fill(double[] block, int length) {
+        Arrays.fill(block, 0, length, 0.0);
+        for (EventProbability eventProbability : alwaysEvents) {
+            for (int i = 0; i < length; i++) {
+                block[i] += eventProbability.nextImpact(random);
+            }
+        }
+        long end = sample + length;
+        for (int event = 0; event < sometimesEvents.length; event++) {
+            EventProbability eventProbability = sometimesEvents[event];
+            long occurrence = nextOccurrences[event];
+            for (; occurrence < end; occurrence = following(occurrence, eventProbability.nextGap(random))) {
+                block[(int) (occurrence - sample)] += eventProbability.nextImpact(random);
+            }
+            nextOccurrences[event] = occurrence;
+        }
+        skipTo(end);
+        for (int i = 0; i < length; i++) {
+            if (block[i] <= 0.0 && retry()) {
+                block[i] = nextDouble(block[i]);
+            }
+        }
+    }
+
+    /*
+     * Like ProbabilitySupplier, a sample whose value is not positive keeps
+     * accumulating the values of the following samples until it is.
+     */
+    private int nextInt(int value) {
+        do {
+            for (EventProbability eventProbability : alwaysEvents) {
+                value += eventProbability.nextIntImpact(random);
+            }
+            if (sample == nextOccurrence) {
+                for (int i = 0; i < sometimesEvents.length; i++) {
+                    if (nextOccurrences[i] == sample) {
+                        value += sometimesEvents[i].nextIntImpact(random);
+                    }
+                }
+                advance();
+            }
+            sample++;
+        } while (value <= 0 && retry());
+        return value;
+    }
+
+    private long nextLong(long value) {
+        do {
+            for (EventProbability eventProbability : alwaysEvents) {
+                value += eventProbability.nextLongImpact(random);
+            }
+            if (sample == nextOccurrence) {
+                for (int i = 0; i < sometimesEvents.length; i++) {
+                    if (nextOccurrences[i] == sample) {
+                        value += sometimesEvents[i].nextLongImpact(random);
+                    }
+                }
+                advance();
+            }
+            sample++;
+        } while (value <= 0 && retry());
+        return value;
+    }
+
+    private double nextDouble(double value) {
+        do {
+            for (EventProbability eventProbability : alwaysEvents) {
+                value += eventProbability.nextImpact(random);
+            }
+            if (sample == nextOccurrence) {
+                for (int i = 0; i < sometimesEvents.length; i++) {
+                    if (nextOccurrences[i] == sample) {
+                        value += sometimesEvents[i].nextImpact(random);
+                    }
+                }
+                advance();
+            }
+            sample++;
+        } while (value <= 0.0 && retry());
+        return value;
+    }
+
+    /**
+     * Draws the next occurrence of each event that occurred in the current
+     * sample, and finds the next sample in which any event occurs. This scans all
+     * of the events, but only runs for samples in which an event occurred.
+     */
+    private void advance() {
+        nextOccurrence = Long.MAX_VALUE;
+        for (int i = 0; i < sometimesEvents.length; i++) {
+            if (nextOccurrences[i] == sample) {
+                nextOccurrences[i] = following(sample, sometimesEvents[i].nextGap(random));
+            }
+            nextOccurrence = Math.min(nextOccurrence, nextOccurrences[i]);
+        }
+    }
+
+    /**
+     * Moves the current sample forward to the given sample, once a block has
+     * drawn the occurrences of every event before it.
+     */
+    private void skipTo(long end) {
+        sample = end;
+        nextOccurrence = Long.MAX_VALUE;
+        for (long occurrence : nextOccurrences) {
+            nextOccurrence = Math.min(nextOccurrence, occurrence);
+        }
+    }
+
+    private static long following(long occurrence, long gap) {
+        return (gap >= Long.MAX_VALUE - occurrence - 1 ? Long.MAX_VALUE : occurrence + 1 + gap);
+    }
+}
@@ -1,25 +1,50 @@
 package net.edmison.HdrHistogram.cli;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.DoubleConsumer;
+import java.util.function.Function;
 import java.util.function.IntConsumer;
 import java.util.function.LongConsumer;
-import java.util.stream.DoubleStream;
-import java.util.stream.IntStream;
-import java.util.stream.LongStream;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
 
+import org.HdrHistogram.AbstractHistogram;
 import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
 import org.HdrHistogram.Histogram;
-import org.HdrHistogram.IntCountsHistogram;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Model.PositionalParamSpec;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
@@ -72,6 +97,50 @@ public class HdrHistogramCLI {
         INT, LONG, DOUBLE
     };
 
+    enum Reduction {
+        LINEAR, TREE
+    };
+
+    enum MergeOutput {
+        TABLE, BLOB, URL
+    };
+
+    /**
+     * The --exact option, of the hist and url sub-commands.
+     */
+    static class ExactOption {
+        @Option(names = { "--exact" }, 
+                description = "Compute the distribution of the values, instead of generating them, and fill the "
+                        + "histogram with the expected count of each value out of the count.  int and long only")
+        boolean exact;
+    }
+
+    /**
+     * The --rate option, of the hist and url sub-commands.
+     */
+    static class RateOption {
+        @Option(names = { "--rate" }, paramLabel = "RATE", 
+                description = "Simulate an open-loop load, with RATE requests arriving per second, and the values as "
+                        + "their service times in the unit.  Outputs the raw, the coordinated omission corrected, "
+                        + "and the simulated response time histograms")
+        Double rate;
+    }
+
+    /**
+     * The --checkpoint and --checkpoint-every options, of the hist and test
+     * sub-commands.
+     */
+    static class CheckpointOptions {
+        @Option(names = { "--checkpoint" }, paramLabel = "FILE", 
+                description = "Checkpoint the partial histogram of hist, or the comparison of test, to FILE every "
+                        + "--checkpoint-every values, and resume from FILE if it exists, reporting progress on "
+                        + "standard error")
+        Path checkpoint;
+        @Option(names = { "--checkpoint-every" }, paramLabel = "N", defaultValue = "100000000", 
+                description = "The number of values generated between checkpoints.  Default: ${DEFAULT-VALUE}")
+        long checkpointEvery;
+    }
+
     @Option(names = { "-s", "--seed" }, paramLabel = "SEED", scope = ScopeType.INHERIT, 
             description = "seed value for generating random values")
     Long seed;
@@ -81,119 +150,878 @@ public class HdrHistogramCLI {
     EventProbability baseOption;
     @Option(names = { "-e", "--event" }, paramLabel = "EVENT", scope = ScopeType.INHERIT, 
             description = "The probability of an event occurring, with a probability, a latency mean, and a standard deviation: e.g. <probability:latencyMean:stdDev>", 
-            converter = EventProbabilityConverter.class, required = true, arity = "1..*")
+            converter = EventProbabilityConverter.class, arity = "1..*")
     EventProbability[] eventsOption;
     @Option(names = { "-t", "--type" }, paramLabel = "TYPE", scope = ScopeType.INHERIT, 
             description = "The type of values (and histogram) to generate.  valid values are int, long, or double", 
             defaultValue = "LONG")
     HistType histType;
-    @Parameters(index = "0", scope = ScopeType.INHERIT, 
-            description = "The number of values to generate")
-    Integer count;
+    @Option(names = { "--scale" }, paramLabel = "FACTOR", scope = ScopeType.INHERIT, 
+            description = "Record double values as fixed-point longs, each multiplied by FACTOR and rounded, e.g. 1000 "
+                    + "for values in microseconds recorded as nanoseconds, into a preallocated Histogram like long "
+                    + "values, instead of an auto-ranging DoubleHistogram.  Double values can then be linked with url")
+    Double scale;
+    @Option(names = { "--threads" }, paramLabel = "THREADS", scope = ScopeType.INHERIT, 
+            description = "The number of threads to generate values with.  Each thread generates its own chunk of the values, "
+                    + "with its own random stream split from the seed, and the chunk histograms are merged at the end")
+    int threads = 1;
+    @Option(names = { "--sampler" }, paramLabel = "SAMPLER", scope = ScopeType.INHERIT, 
+            description = "How to decide which events occur in each value.  bernoulli draws a random value for every event "
+                    + "for every value; geometric draws the number of values until each event next occurs, "
+                    + "which is much faster for rare events.  valid values are bernoulli or geometric")
+    ProbabilitySupplier.Sampler sampler = ProbabilitySupplier.Sampler.BERNOULLI;
+    @Option(names = { "--rng" }, paramLabel = "ENGINE", scope = ScopeType.INHERIT, 
+            description = "The random number generator to generate values with.  random, the default, is "
+                    + "java.util.Random with Gaussian values drawn from a ziggurat table; legacy is java.util.Random "
+                    + "with its own Gaussian values, which reproduces the values of earlier versions for the same "
+                    + "seed; xoroshiro128pp, l64x128mix and splitmix are faster java.util.random generators.  "
+                    + "valid values are random, legacy, xoroshiro128pp, l64x128mix or splitmix")
+    RandomEngine rng = RandomEngine.RANDOM;
+    @Option(names = { "--unit" }, paramLabel = "UNIT", scope = ScopeType.INHERIT, defaultValue = "MILLISECONDS", 
+            description = "The time unit of the values, for simulated time.  valid values are nanoseconds, "
+                    + "microseconds, milliseconds or seconds")
+    TimeUnit unit;
+    // from the RateOption of hist and url
+    Double rate;
+    // from the ExactOption of hist and url
+    boolean exact;
+    @Option(names = { "--histogram-impl" }, paramLabel = "IMPL", scope = ScopeType.INHERIT, 
+            description = "The histogram implementation that hist and test record into.  Default: int for int values, "
+                    + "long for long values, and long counts for double values.  "
+                    + "valid values are int, long, short, packed, packed-concurrent or atomic", 
+            converter = HistogramImplConverter.class)
+    HistogramImpl histogramImpl;
+    @Option(names = { "--digits" }, paramLabel = "DIGITS", scope = ScopeType.INHERIT, 
+            description = "The number of significant value digits of the histograms of hist and test, from 0 to 5.  "
+                    + "Default: 3, or 4 for the double histograms of hist")
+    Integer digits;
+    @Option(names = { "--auto" }, scope = ScopeType.INHERIT, 
+            description = "Size the histograms of hist and test to the events: the implementation of the smallest "
+                    + "estimated footprint, short, int or long counts that can hold the count, or packed (unless "
+                    + "--histogram-impl is given), with a range up to the likely largest value, the sum of each "
+                    + "event's mean plus 6 standard deviations")
+    boolean auto;
+    // from the CheckpointOptions of hist and test
+    Path checkpoint;
+    long checkpointEvery;
+    @Option(names = { "--stats" }, scope = ScopeType.INHERIT, 
+            description = "Report the statistics of the run on standard error once it completes: values generated "
+                    + "per second, random draws and retries per value, histogram merges and bytes encoded, memory "
+                    + "allocated while generating, and garbage collections")
+    boolean stats;
+    @Option(names = { "-i", "--input" }, paramLabel = "FILE", scope = ScopeType.INHERIT, 
+            description = "Read the values from FILE (or from standard input for -), in the input format, "
+                    + "instead of generating them")
+    Path input;
+    @Option(names = { "--column" }, paramLabel = "COLUMN", scope = ScopeType.INHERIT, 
+            description = "Read the input values from this column of comma separated lines, counting from 1, "
+                    + "instead of reading whitespace separated values.  Text format only")
+    Integer column;
+    @Option(names = { "--header" }, scope = ScopeType.INHERIT, 
+            description = "Skip the first line of the input.  Text format only")
+    boolean header;
+    @Option(names = { "-f", "--format" }, paramLabel = "FORMAT", scope = ScopeType.INHERIT, 
+            description = "The format of values written by data, and of the input values.  "
+                    + "valid values are text, binary-le (4 byte ints, 8 byte longs or doubles), or varint (ints and longs only)", 
+            converter = ValueFormatConverter.class)
+    ValueFormat format = ValueFormat.TEXT;
+    @Parameters(index = "0", scope = ScopeType.INHERIT, arity = "0..1", 
+            description = "The number of values to generate.  Required unless the values are read from an input")
+    Long count;
 
     @Spec
     static CommandSpec spec;
 
+    GenerationStats runStats;
+
     public static void main(String[] args) {
         int exitCode = execute(args);
         System.exit(exitCode);
     }
 
     protected static int execute(String[] args) {
-        int exitCode = new CommandLine(new HdrHistogramCLI())
-                .setCaseInsensitiveEnumValuesAllowed(true)
-                .execute(args);
+        HdrHistogramCLI cli = new HdrHistogramCLI();
+        CommandLine commandLine = new CommandLine(cli)
+                .setCaseInsensitiveEnumValuesAllowed(true);
+        // merge and query take files instead of the count of values to generate
+        removeInheritedPositionals(commandLine.getSubcommands().get("merge").getCommandSpec());
+        removeInheritedPositionals(commandLine.getSubcommands().get("query").getCommandSpec());
+        int exitCode = commandLine.execute(args);
+        if (cli.runStats != null) {
+            cli.runStats.print(System.err);
+        }
         return exitCode;
     }
 
+    private static void removeInheritedPositionals(CommandSpec command) {
+        List<PositionalParamSpec> inherited = new ArrayList<>();
+        for (PositionalParamSpec positional : command.positionalParameters()) {
+            if (positional.inherited()) {
+                inherited.add(positional);
+            }
+        }
+        inherited.forEach(command::remove);
+    }
+
     void validate() {
-        if (count < 1) {
+        if (input != null) {
+            if (count != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The count parameter can't be used with an input, all of the input values are read");
+            }
+        } else {
+            if (count == null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Missing required parameter: '<count>'");
+            }
+            if (baseOption == null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Missing required option: '--base=BASE'");
+            }
+            if (eventsOption == null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Missing required option: '--event=EVENT'");
+            }
+        }
+        if (input == null && (column != null || header)) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The column and header options can only be used with an input");
+        }
+        if (format != ValueFormat.TEXT && (column != null || header)) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The column and header options can only be used with the text format");
+        }
+        if (column != null && column < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The column value has to be greater than or equal to 1");
+        }
+        if (count != null && count < 1) {
             throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
                     "The count value has to be greater than or equal to 1");
         }
+        if (format == ValueFormat.VARINT && histType == HistType.DOUBLE) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The varint format doesn't support double values");
+        }
+        validateScale();
+        if (rate != null) {
+            if (!(rate > 0)) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The rate value has to be greater than 0");
+            }
+            if (histType != HistType.DOUBLE && getArrivalInterval() < 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The rate is too high for integer values in " + unit.name().toLowerCase()
+                                + ", the time between arrivals has to be at least 1");
+            }
+            if (threads != 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The rate option can only be used with a single thread");
+            }
+        }
+        if (exact) {
+            if (input != null || rate != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The exact option can't be used with an input or a rate");
+            }
+            if (histType == HistType.DOUBLE) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The exact option only supports int and long values");
+            }
+        }
+        if (digits != null && (digits < 0 || digits > 5)) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The digits value has to be from 0 to 5");
+        }
+        if (auto && input != null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The auto option needs the events, so it can't be used with an input");
+        }
+        if (histogramImpl == HistogramImpl.ATOMIC) {
+            if (!auto) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Atomic histograms can't grow, so they need the range of the auto option");
+            }
+            if (recordedType() == HistType.DOUBLE) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Atomic histograms can't hold double values, unless they're scaled to longs");
+            }
+        }
+        if (histogramImpl != null && count != null && count > histogramImpl.maxCount()) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The counts of " + histogramImpl + " histograms can't hold " + count + " values");
+        }
+        if (checkpoint != null) {
+            if (input != null || rate != null || exact) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The checkpoint option can't be used with an input, a rate or the exact option");
+            }
+            if (checkpointEvery < 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The checkpoint-every value has to be greater than or equal to 1");
+            }
+        }
+        if (threads < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The threads value has to be greater than or equal to 1");
+        }
+        if (stats) {
+            runStats = new GenerationStats();
+        }
+    }
+
+    private void validateScale() {
+        if (scale == null) {
+            return;
+        }
+        if (!(scale > 0) || scale.isInfinite()) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The scale value has to be greater than 0");
+        }
+        if (histType != HistType.DOUBLE) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The scale option only applies to double values");
+        }
+        if (rate != null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The scale option can't be used with a rate, whose arrivals are in the unit of the values");
+        }
+    }
+
+    /**
+     * The type of the values that are recorded: long for double values scaled
+     * to fixed-point longs with --scale, and otherwise the type.
+     */
+    private HistType recordedType() {
+        return (scale != null ? HistType.LONG : histType);
+    }
+
+    /**
+     * Converts each double value to a fixed-point long, multiplied by the scale
+     * and rounded, for the consumer.
+     */
+    private DoubleConsumer scaled(LongConsumer consumer) {
+        double factor = scale;
+        return value -> consumer.accept(Math.round(value * factor));
     }
 
     void processInt(IntConsumer intConsumer) {
-        ProbabilitySupplier supplier = getProbabilitySupplier();
-        IntStream.generate(supplier).limit(count).forEachOrdered(intConsumer);
+        if (input != null) {
+            readInput(Integer.BYTES, reader -> reader.forEachInt(intConsumer));
+            return;
+        }
+        GenerationStats.generate(runStats, sampler, getEventProbabilities(), rng.create(seed), count, intConsumer,
+                (supplier, chunkCount, consumer) -> supplier.forEachInt(chunkCount, consumer));
     }
 
+    /**
+     * Generates, or reads, the long values, or with --scale, the double values
+     * as fixed-point longs.
+     */
     void processLong(LongConsumer longConsumer) {
-        ProbabilitySupplier supplier = getProbabilitySupplier();
-        LongStream.generate(supplier).limit(count).forEachOrdered(longConsumer);
+        if (scale != null) {
+            processDouble(scaled(longConsumer));
+            return;
+        }
+        if (input != null) {
+            readInput(Long.BYTES, reader -> reader.forEachLong(longConsumer));
+            return;
+        }
+        GenerationStats.generate(runStats, sampler, getEventProbabilities(), rng.create(seed), count, longConsumer,
+                (supplier, chunkCount, consumer) -> supplier.forEachLong(chunkCount, consumer));
     }
 
     void processDouble(DoubleConsumer doubleConsumer) {
-        ProbabilitySupplier supplier = getProbabilitySupplier();
-        DoubleStream.generate(supplier).limit(count).forEachOrdered(doubleConsumer);
+        if (input != null) {
+            readInput(Double.BYTES, reader -> reader.forEachDouble(doubleConsumer));
+            return;
+        }
+        GenerationStats.generate(runStats, sampler, getEventProbabilities(), rng.create(seed), count, doubleConsumer,
+                (supplier, chunkCount, consumer) -> supplier.forEachDouble(chunkCount, consumer));
+    }
+
+    /**
+     * Generates the values into targets created by the factory. With a single
+     * thread, all of the values are generated into one target from the seeded
+     * random stream; with more threads, the values are split into one chunk per
+     * thread, and the chunk targets are combined once all of the chunks are
+     * generated. Values read from an input file are split into chunks in the
+     * same way, and parsed in parallel.
+     */
+    <T> T processIntChunks(Supplier<T> factory, Function<T, IntConsumer> consumer, BinaryOperator<T> combiner) {
+        return processIntChunks(factory, consumer, combiner, null);
+    }
+
+    /**
+     * Generates the values as processIntChunks does, or in checkpointed segments
+     * with --checkpoint, saving and loading the combined target with the state.
+     */
+    <T> T processIntChunks(Supplier<T> factory, Function<T, IntConsumer> consumer, BinaryOperator<T> combiner,
+            CheckpointedGenerator.State<T> state) {
+        if (checkpoint != null) {
+            return generateCheckpointed(factory,
+                    (supplier, chunkCount, target) -> supplier.forEachInt(chunkCount, consumer.apply(target)),
+                    combiner, state);
+        }
+        if (input != null && !isStandardInput()) {
+            return readChunks(Integer.BYTES, threads, factory,
+                    (reader, target) -> reader.forEachInt(consumer.apply(target)), combiner);
+        }
+        if (threads == 1 || input != null) {
+            T target = factory.get();
+            processInt(consumer.apply(target));
+            return target;
+        }
+        return getChunkedGenerator().generate(count, factory,
+                (supplier, chunkCount, target) -> supplier.forEachInt(chunkCount, consumer.apply(target)),
+                combiner);
+    }
+
+    <T> T processLongChunks(Supplier<T> factory, Function<T, LongConsumer> consumer, BinaryOperator<T> combiner) {
+        return processLongChunks(factory, consumer, combiner, null);
+    }
+
+    <T> T processLongChunks(Supplier<T> factory, Function<T, LongConsumer> consumer, BinaryOperator<T> combiner,
+            CheckpointedGenerator.State<T> state) {
+        if (scale != null) {
+            return processDoubleChunks(factory, target -> scaled(consumer.apply(target)), combiner, state);
+        }
+        if (checkpoint != null) {
+            return generateCheckpointed(factory,
+                    (supplier, chunkCount, target) -> supplier.forEachLong(chunkCount, consumer.apply(target)),
+                    combiner, state);
+        }
+        if (input != null && !isStandardInput()) {
+            return readChunks(Long.BYTES, threads, factory,
+                    (reader, target) -> reader.forEachLong(consumer.apply(target)), combiner);
+        }
+        if (threads == 1 || input != null) {
+            T target = factory.get();
+            processLong(consumer.apply(target));
+            return target;
+        }
+        return getChunkedGenerator().generate(count, factory,
+                (supplier, chunkCount, target) -> supplier.forEachLong(chunkCount, consumer.apply(target)),
+                combiner);
+    }
+
+    <T> T processDoubleChunks(Supplier<T> factory, Function<T, DoubleConsumer> consumer,
+            BinaryOperator<T> combiner) {
+        return processDoubleChunks(factory, consumer, combiner, null);
+    }
+
+    <T> T processDoubleChunks(Supplier<T> factory, Function<T, DoubleConsumer> consumer,
+            BinaryOperator<T> combiner, CheckpointedGenerator.State<T> state) {
+        if (checkpoint != null) {
+            return generateCheckpointed(factory,
+                    (supplier, chunkCount, target) -> supplier.forEachDouble(chunkCount, consumer.apply(target)),
+                    combiner, state);
+        }
+        if (input != null && !isStandardInput()) {
+            return readChunks(Double.BYTES, threads, factory,
+                    (reader, target) -> reader.forEachDouble(consumer.apply(target)), combiner);
+        }
+        if (threads == 1 || input != null) {
+            T target = factory.get();
+            processDouble(consumer.apply(target));
+            return target;
+        }
+        return getChunkedGenerator().generate(count, factory,
+                (supplier, chunkCount, target) -> supplier.forEachDouble(chunkCount, consumer.apply(target)),
+                combiner);
+    }
+
+    private void readInput(int valueBytes, Consumer<ValueReader> action) {
+        if (!isStandardInput()) {
+            // a single thread reads the chunks in order
+            readChunks(valueBytes, 1, () -> action, (reader, target) -> target.accept(reader),
+                    (first, second) -> first);
+            return;
+        }
+        try (ValueReader reader = new ValueReader(System.in, format, (column == null ? 0 : column))) {
+            if (header) {
+                reader.skipLine();
+            }
+            action.accept(reader);
+        } catch (IOException cause) {
+            throw new UncheckedIOException(cause);
+        } catch (NumberFormatException cause) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), cause.getMessage());
+        }
+    }
+
+    /**
+     * Reads the values of the input file, as ChunkedReader.read does, with an
+     * invalid value reported as an error of the input, with its position.
+     */
+    private <T> T readChunks(int valueBytes, int threads, Supplier<T> factory, ChunkedReader.ChunkTask<T> task,
+            BinaryOperator<T> combiner) {
+        try {
+            return getChunkedReader(valueBytes, threads).read(factory, task, combiner);
+        } catch (NumberFormatException cause) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), cause.getMessage());
+        }
     }
 
-    private ProbabilitySupplier getProbabilitySupplier() {
+    private boolean isStandardInput() {
+        return "-".equals(input.toString());
+    }
+
+    private ChunkedReader getChunkedReader(int valueBytes, int threads) {
+        return new ChunkedReader(input, format, valueBytes, (column == null ? 0 : column), header, threads);
+    }
+
+    private List<EventProbability> getEventProbabilities() {
         List<EventProbability> eventProbabilities = new ArrayList<>();
         eventProbabilities.add(baseOption);
         eventProbabilities.addAll(Arrays.asList(eventsOption));
+        return eventProbabilities;
+    }
+
+    private ChunkedGenerator getChunkedGenerator() {
+        return new ChunkedGenerator(getEventProbabilities(), seed, threads, sampler, rng, runStats);
+    }
+
+    private <T> T generateCheckpointed(Supplier<T> factory, ChunkedGenerator.ChunkTask<T> task,
+            BinaryOperator<T> combiner, CheckpointedGenerator.State<T> state) {
+        if (state == null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The checkpoint option can't be used with these options");
+        }
+        List<EventProbability> eventProbabilities = getEventProbabilities();
+        String configuration = String.format(
+                "type=%s count=%d events=%s sampler=%s rng=%s threads=%d every=%d histogram=%s digits=%s auto=%s"
+                        + (scale == null ? "" : " scale=" + scale),
+                histType, count, eventProbabilities, sampler, rng, threads, checkpointEvery, histogramImpl, digits,
+                auto);
+        CheckpointedGenerator generator = new CheckpointedGenerator(eventProbabilities, threads, sampler, rng,
+                checkpointEvery, checkpoint, configuration, System.err, runStats);
+        try {
+            return generator.generate(seed, count, factory, task, combiner, state);
+        } catch (IllegalArgumentException cause) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), cause.getMessage());
+        }
+    }
+
+    /**
+     * The operations of int histograms: IntCountsHistogram, unless the count is
+     * more than an int count can hold, and then Histogram.
+     */
+    private HistogramOperations<? extends AbstractHistogram> intOperations() {
+        return (count != null && count > Integer.MAX_VALUE ? HistogramOperations.LONG : HistogramOperations.INT);
+    }
+
+    /**
+     * The operations of the histograms of int and long values for hist and
+     * test: the implementation from --histogram-impl, or from --auto, or the
+     * type's own, with --digits significant digits, and with --auto, a range up
+     * to the events' likely largest value.  Double values scaled to fixed-point
+     * longs are recorded into the same histograms as long values.
+     */
+    private HistogramOperations<AbstractHistogram> integerOperations() {
+        long highest = (auto ? HistogramImpl.likelyMax(getEventProbabilities(), (scale == null ? 1.0 : scale)) : 0);
+        int significantDigits = (digits == null ? 3 : digits);
+        HistogramImpl impl = histogramImpl;
+        if (impl == null) {
+            if (auto) {
+                impl = HistogramImpl.smallestFor(count, highest, significantDigits);
+            } else {
+                impl = (histType == HistType.INT && (count == null || count <= Integer.MAX_VALUE) ? HistogramImpl.INT
+                        : HistogramImpl.LONG);
+            }
+        }
+        return impl.operations(highest, significantDigits);
+    }
+
+    /**
+     * The operations of the double histograms for hist and test, whose counts
+     * are the implementation from --histogram-impl or --auto.
+     */
+    private HistogramOperations<DoubleHistogram> doubleOperations(int defaultDigits) {
+        int significantDigits = (digits == null ? defaultDigits : digits);
+        HistogramImpl impl = histogramImpl;
+        if (impl == null) {
+            impl = (auto ? HistogramImpl.smallestFor(count, 0, significantDigits) : HistogramImpl.LONG);
+        }
+        return impl.doubleOperations(significantDigits);
+    }
+
+    /**
+     * Reports the implementation and the estimated memory footprint of the
+     * histogram on standard error, and with more threads, that each thread had
+     * one of its own while generating.
+     */
+    private void reportFootprint(EncodableHistogram histogram, int footprint) {
+        int significantDigits = (histogram instanceof DoubleHistogram
+                ? ((DoubleHistogram) histogram).getNumberOfSignificantValueDigits()
+                : ((AbstractHistogram) histogram).getNumberOfSignificantValueDigits());
+        System.err.printf("Histogram: %s, %d significant digits, estimated footprint %d bytes%s%n",
+                histogram.getClass().getSimpleName(), significantDigits, footprint,
+                (threads > 1 && input == null ? ", and one per thread while generating" : ""));
+    }
+
+    private void rejectHistogramOptions() {
+        if (histogramImpl != null || digits != null || auto) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The histogram-impl, digits and auto options can only be used with hist and test");
+        }
+    }
 
-        ProbabilitySupplier supplier = (seed == null
-                ? new ProbabilitySupplier(eventProbabilities)
-                : new ProbabilitySupplier(eventProbabilities, seed));
-        return supplier;
+    private AbstractHistogram newIntHistogram() {
+        return intOperations().create();
     }
 
     @Command(name = "test", description = "test merged histograms produces same result as using a single histogram")
-    void testMerge() {
+    void testMerge(@Option(names = { "--batch-size" }, paramLabel = "N", defaultValue = "10000", 
+            description = "Number of values recorded into each batch histogram before it is merged") int batchSize,
+            @Option(names = { "--reduce" }, paramLabel = "REDUCTION", defaultValue = "LINEAR", 
+            description = "How to merge the batch histograms.  linear merges each batch into a single histogram in turn; "
+                    + "tree merges all of the batches pairwise in a fork-join tree, on --threads threads.  "
+                    + "valid values are linear or tree") Reduction reduction,
+            @Option(names = { "--workers" }, paramLabel = "N", 
+            description = "Generate the values in N shards, each in a worker process of its own, which streams its "
+                    + "batch histograms, compressed, over loopback TCP to be merged as they arrive") Integer workers,
+            @Mixin CheckpointOptions checkpointOptions)
+            throws IOException {
+        checkpoint = checkpointOptions.checkpoint;
+        checkpointEvery = checkpointOptions.checkpointEvery;
         validate();
+        if (batchSize < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "--batch-size must be greater than or equal to 1");
+        }
+        if (workers != null) {
+            if (workers < 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The workers value has to be greater than or equal to 1");
+            }
+            if (input != null || checkpoint != null || reduction == Reduction.TREE || threads != 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The workers option can't be used with an input, a checkpoint, the tree reduction or threads, "
+                                + "each worker generates its shard on a single thread");
+            }
+            rejectHistogramOptions();
+            testDistributedMerge(batchSize, workers);
+            return;
+        }
+        if (reduction == Reduction.TREE) {
+            if (checkpoint != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The checkpoint option can only be used with the linear reduction");
+            }
+            testTreeMerge(batchSize);
+            return;
+        }
 
-        boolean compareResult;
-        switch (histType) {
+        HistogramCompare<?> comparator;
+        switch (recordedType()) {
             case INT:
-                IntHistogramCompare intComparator = new IntHistogramCompare();
-                processLong(intComparator::accrue);
-                compareResult = intComparator.compare();
-                break;
             case LONG:
-                LongHistogramCompare longComparator = new LongHistogramCompare();
-                processLong(longComparator::accrue);
-                compareResult = longComparator.compare();
+                comparator = compareLongs(integerOperations(), batchSize);
                 break;
             case DOUBLE:
-                DoubleHistogramCompare doubleComparator = new DoubleHistogramCompare();
-                processDouble(doubleComparator::accrue);
-                compareResult = doubleComparator.compare();
+                HistogramOperations<DoubleHistogram> operations = doubleOperations(3);
+                comparator = processDoubleChunks(() -> new HistogramCompare<>(operations, batchSize),
+                        compare -> compare::accrue, HistogramCompare::combine,
+                        HistogramCompare.state(operations, batchSize));
                 break;
             default:
                 throw new RuntimeException("Unknown histogram type: " + histType);
         }
-        if (compareResult) {
-            System.out.println("Histograms are equal");
-        } else {
-            System.out.println("Histograms are not equal");
+        printCompareResult(comparator.compare());
+        comparator.printStatistics(System.out);
+        if (runStats != null) {
+            runStats.merged(comparator.mergeCount, comparator.bytesEncoded);
+        }
+    }
+
+    /**
+     * Forks the workers, each generating its shard from its own seed drawn from
+     * the seed, and merges the batches they stream back. The reference
+     * histogram is then generated in this process, shard by shard, from the same
+     * seeds.
+     */
+    private void testDistributedMerge(int batchSize, int workers) throws IOException {
+        SplittableRandom root = (seed == null ? new SplittableRandom() : new SplittableRandom(seed));
+        long[] shardSeeds = new long[workers];
+        long[] shardCounts = new long[workers];
+        for (int shard = 0; shard < workers; shard++) {
+            shardSeeds[shard] = root.nextLong();
+            shardCounts[shard] = count / workers + (shard < count % workers ? 1 : 0);
+        }
+
+        DistributedCompare<?> compare = (recordedType() == HistType.DOUBLE ? DistributedCompare.ofDoubles()
+                : DistributedCompare.ofLongs());
+        List<Process> processes = new ArrayList<>(workers);
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            for (int shard = 0; shard < workers; shard++) {
+                processes.add(startWorker(server.getLocalPort(), shard, shardSeeds[shard], shardCounts[shard],
+                        batchSize));
+            }
+            compare.receive(server, workers,
+                    () -> processes.stream().anyMatch(process -> !process.isAlive() && process.exitValue() != 0));
+            for (Process process : processes) {
+                if (process.waitFor() != 0) {
+                    throw new IllegalStateException("A worker failed with exit code " + process.exitValue());
+                }
+            }
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the workers", cause);
+        } finally {
+            processes.forEach(Process::destroy);
         }
 
+        Histogram reference = new Histogram(3);
+        DoubleHistogram doubleReference = new DoubleHistogram(3);
+        for (int shard = 0; shard < workers; shard++) {
+            generateShard(shardSeeds[shard], shardCounts[shard], reference::recordValue,
+                    doubleReference::recordValue);
+        }
+        printCompareResult((recordedType() == HistType.DOUBLE ? doubleReference : reference).equals(
+                compare.merged()));
+        compare.printStatistics(System.out);
     }
 
-    @Command(name = "data", description = "Generate numbers simulating latency")
-    void dataGen() {
-        validate();
+    private Process startWorker(int port, int shard, long shardSeed, long shardCount, int batchSize)
+            throws IOException {
+        List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java")
+                .toString(), "-cp", System.getProperty("java.class.path"), HdrHistogramCLI.class.getName(), "worker",
+                "--port", Integer.toString(port), "--shard", Integer.toString(shard), "--batch-size",
+                Integer.toString(batchSize), "--seed", Long.toString(shardSeed), "--type", histType.name(), "--rng",
+                rng.name(), "--sampler", sampler.name(), "--base",
+                baseOption.mean() + ":" + baseOption.deviation()));
+        for (EventProbability event : eventsOption) {
+            command.add("--event");
+            command.add(event.probability() + ":" + event.mean() + ":" + event.deviation());
+        }
+        if (scale != null) {
+            command.add("--scale");
+            command.add(scale.toString());
+        }
+        command.add(Long.toString(shardCount));
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    /**
+     * Generates a shard's values, from its seed, in the same way in the workers
+     * and for the reference histogram: int and long values, and double values
+     * scaled with --scale, to the longs, and double values to the doubles.
+     */
+    private void generateShard(long shardSeed, long shardCount, LongConsumer longs, DoubleConsumer doubles) {
+        ProbabilitySupplier supplier = sampler.create(getEventProbabilities(), rng.create(shardSeed));
         switch (histType) {
             case INT:
-                processInt(System.out::println);
+                supplier.forEachInt(shardCount, longs::accept);
                 break;
             case LONG:
-                processLong(System.out::println);
+                supplier.forEachLong(shardCount, longs);
+                break;
+            case DOUBLE:
+                supplier.forEachDouble(shardCount, (scale == null ? doubles : scaled(longs)));
+                break;
+            default:
+                throw new RuntimeException("Unknown histogram type: " + histType);
+        }
+    }
+
+    @Command(name = "worker", hidden = true, 
+            description = "Generate a shard of the values of test --workers, and stream its batch histograms to the "
+                    + "coordinator")
+    void worker(@Option(names = { "--port" }, required = true) int port,
+            @Option(names = { "--shard" }, required = true) int shard,
+            @Option(names = { "--batch-size" }, required = true) int batchSize) throws IOException {
+        validate();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            if (recordedType() == HistType.DOUBLE) {
+                try (DistributedCompare.Sender<DoubleHistogram> sender = new DistributedCompare.Sender<>(
+                        HistogramOperations.DOUBLE, batchSize, socket, shard)) {
+                    generateShard(seed, count, sender::accrue, sender::accrue);
+                }
+            } else {
+                try (DistributedCompare.Sender<Histogram> sender = new DistributedCompare.Sender<>(
+                        HistogramOperations.LONG, batchSize, socket, shard)) {
+                    generateShard(seed, count, sender::accrue, sender::accrue);
+                }
+            }
+        }
+    }
+
+    private <H extends AbstractHistogram> HistogramCompare<H> compareLongs(HistogramOperations<H> operations,
+            int batchSize) {
+        return processLongChunks(() -> new HistogramCompare<>(operations, batchSize), compare -> compare::accrue,
+                HistogramCompare::combine, HistogramCompare.state(operations, batchSize));
+    }
+
+    private void testTreeMerge(int batchSize) {
+        // the reference has the batches' digits, as histograms only equal those with the same digits
+        int significantDigits = (digits == null ? 3 : digits);
+        TreeReduction<?, ?> reduction;
+        switch (recordedType()) {
+            case INT:
+            case LONG:
+                reduction = reduceLongs(new TreeReduction<>(integerOperations(),
+                        HistogramOperations.concurrentLong(significantDigits), batchSize));
                 break;
             case DOUBLE:
-                processDouble(System.out::println);
+                reduction = reduceDoubles(new TreeReduction<>(doubleOperations(3),
+                        HistogramOperations.concurrentDouble(significantDigits), batchSize));
                 break;
             default:
                 throw new RuntimeException("Unknown histogram type: " + histType);
         }
+        reduction.printStatistics(System.out);
+        if (runStats != null) {
+            runStats.merged(reduction.batchCount, reduction.bytesEncoded);
+        }
+    }
+
+    private <H extends EncodableHistogram, R extends EncodableHistogram> TreeReduction<H, R> reduceLongs(
+            TreeReduction<H, R> reduction) {
+        TreeReduction<H, R>.Batches batches = processLongChunks(reduction::newBatches, b -> b::accrue,
+                TreeReduction.Batches::combine);
+        printCompareResult(reduction.reduce(batches, threads));
+        return reduction;
+    }
+
+    private <H extends EncodableHistogram, R extends EncodableHistogram> TreeReduction<H, R> reduceDoubles(
+            TreeReduction<H, R> reduction) {
+        TreeReduction<H, R>.Batches batches = processDoubleChunks(reduction::newBatches, b -> b::accrue,
+                TreeReduction.Batches::combine);
+        printCompareResult(reduction.reduce(batches, threads));
+        return reduction;
+    }
+
+    private static void printCompareResult(boolean equal) {
+        if (equal) {
+            System.out.println("Histograms are equal");
+        } else {
+            System.out.println("Histograms are not equal");
+        }
+    }
+
+    @Command(name = "data", description = "Generate numbers simulating latency")
+    void dataGen(@Option(names = { "-o", "--output" }, paramLabel = "FILE", 
+            description = "Write the values to FILE, in the format, instead of to standard output") Path output)
+            throws IOException {
+        validate();
+        rejectHistogramOptions();
+        if (scale != null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The scale option only applies to the histograms of double values");
+        }
+        try (ValueWriter writer = (output == null
+                ? new ValueWriter(System.out, format)
+                : new ValueWriter(output, format))) {
+            switch (histType) {
+                case INT:
+                    processInt(writer::writeInt);
+                    break;
+                case LONG:
+                    processLong(writer::writeLong);
+                    break;
+                case DOUBLE:
+                    processDouble(writer::writeDouble);
+                    break;
+                default:
+                    throw new RuntimeException("Unknown histogram type: " + histType);
+            }
+        }
     }
 
     @Command(name = "hist", description = "Generate a HDR Histogram")
-    void generate() {
+    void generate(@Option(names = { "--interval" }, paramLabel = "INTERVAL", converter = IntervalConverter.class, 
+            description = "Log an interval histogram every INTERVAL values, e.g. 1000000, or every INTERVAL of "
+                    + "simulated time, e.g. 10s, in which each value takes its own length in the unit") Interval interval,
+            @Option(names = { "--log" }, paramLabel = "FILE", 
+            description = "Write the interval log to FILE instead of to standard output, and still print the "
+                    + "histogram of all of the values") Path log,
+            @Option(names = { "--importance" }, paramLabel = "FACTOR", 
+            description = "Oversample the events, each with its probability multiplied by FACTOR (up to 0.5), and "
+                    + "record each value weighted by how much more likely it was drawn, so that the tail percentiles "
+                    + "converge with far fewer values.  Prints the estimated probability of a value above each tail "
+                    + "percentile, and its standard error") Double importance,
+            @Mixin RateOption rateOption, @Mixin ExactOption exactOption,
+            @Mixin CheckpointOptions checkpointOptions)
+            throws IOException {
+        rate = rateOption.rate;
+        exact = exactOption.exact;
+        checkpoint = checkpointOptions.checkpoint;
+        checkpointEvery = checkpointOptions.checkpointEvery;
         validate();
+        if (importance != null) {
+            if (!(importance >= 1)) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The importance value has to be greater than or equal to 1");
+            }
+            if (input != null || rate != null || exact) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The importance option can't be used with an input, a rate or the exact option");
+            }
+            if (interval != null || log != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The interval and log options can't be used with the importance option");
+            }
+            if (histType == HistType.DOUBLE) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The importance option only supports int and long values");
+            }
+            long maxCount = ImportanceSampler.maxCount(getEventProbabilities(), importance);
+            if (count > maxCount) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(), String.format(
+                        "The count can be at most %d with the importance option, whose weighted counts would "
+                                + "overflow beyond it", maxCount));
+            }
+            if (checkpoint != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The checkpoint option can't be used with the importance option");
+            }
+            rejectHistogramOptions();
+            generateImportance(importance);
+            return;
+        }
+        if (rate != null) {
+            if (interval != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The interval and rate options can't be used together");
+            }
+            rejectHistogramOptions();
+            generateOpenLoop();
+            return;
+        }
+        if (exact) {
+            if (interval != null || log != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The interval and log options can't be used with the exact option");
+            }
+            rejectHistogramOptions();
+            recordExact(getEventProbabilities()).outputPercentileDistribution(System.out, 1.0);
+            return;
+        }
+        if (interval != null) {
+            if (checkpoint != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The checkpoint option can't be used with an interval");
+            }
+            if (threads != 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The interval option can only be used with a single thread");
+            }
+            if (scale != null && interval.isTime()) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The interval can't be a time with the scale option, the values aren't in the unit");
+            }
+            rejectHistogramOptions();
+            generateIntervals(interval, log);
+            return;
+        }
+        if (log != null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The log option can only be used with an interval");
+        }
 
-        switch (histType) {
+        switch (recordedType()) {
             case INT:
                 generateInt();
                 break;
@@ -208,29 +1036,222 @@ public class HdrHistogramCLI {
         }
     }
 
+    private void generateIntervals(Interval interval, Path log) throws IOException {
+        PrintStream logStream = (log == null ? System.out
+                : new PrintStream(new BufferedOutputStream(Files.newOutputStream(log)), false));
+        EncodableHistogram total;
+        try {
+            switch (recordedType()) {
+                case INT:
+                    try (IntervalLogger<Histogram> logger = IntervalLogger.ofLongs(logStream, interval, unit)) {
+                        processInt(logger::recordValue);
+                        total = logger.finish();
+                    }
+                    break;
+                case LONG:
+                    try (IntervalLogger<Histogram> logger = IntervalLogger.ofLongs(logStream, interval, unit)) {
+                        processLong(logger::recordValue);
+                        total = logger.finish();
+                    }
+                    break;
+                case DOUBLE:
+                    try (IntervalLogger<DoubleHistogram> logger = IntervalLogger.ofDoubles(logStream, interval,
+                            unit)) {
+                        processDouble(logger::recordValue);
+                        total = logger.finish();
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("Unknown histogram type: " + histType);
+            }
+        } finally {
+            if (log == null) {
+                logStream.flush();
+            } else {
+                logStream.close();
+            }
+        }
+        if (log != null) {
+            outputPercentileDistribution(total);
+        }
+    }
+
+    /**
+     * The time between open-loop arrivals, in the unit of the values.
+     */
+    private double getArrivalInterval() {
+        return 1e9 / rate / unit.toNanos(1);
+    }
+
+    private OpenLoop<?> simulateOpenLoop() {
+        switch (histType) {
+            case INT:
+                OpenLoop<AbstractHistogram> intLoop = OpenLoop.ofLongs(this::newIntHistogram,
+                        getArrivalInterval());
+                processInt(intLoop::recordValue);
+                return intLoop;
+            case LONG:
+                OpenLoop<Histogram> longLoop = OpenLoop.ofLongs(() -> new Histogram(3), getArrivalInterval());
+                processLong(longLoop::recordValue);
+                return longLoop;
+            case DOUBLE:
+                OpenLoop<DoubleHistogram> doubleLoop = OpenLoop.ofDoubles(() -> new DoubleHistogram(4),
+                        getArrivalInterval());
+                processDouble(doubleLoop::recordValue);
+                return doubleLoop;
+            default:
+                throw new RuntimeException("Unknown histogram type: " + histType);
+        }
+    }
+
+    private void generateOpenLoop() {
+        OpenLoop<?> loop = simulateOpenLoop();
+        String unitName = unit.name().toLowerCase();
+        System.out.printf("Open-loop load of %s requests per second, %s %s apart, utilization %.1f%%%n", rate,
+                loop.interval, unitName, loop.utilization() * 100);
+        System.out.println();
+        System.out.println("Raw service times, as recorded by a closed-loop load (Series_A):");
+        outputPercentileDistribution(loop.raw);
+        System.out.println();
+        System.out.println("Service times corrected for coordinated omission (Series_B):");
+        outputPercentileDistribution(loop.corrected);
+        System.out.println();
+        System.out.println("Simulated response times, including queueing (Series_C):");
+        outputPercentileDistribution(loop.response);
+    }
+
+    private static void outputPercentileDistribution(EncodableHistogram histogram) {
+        if (histogram instanceof DoubleHistogram) {
+            ((DoubleHistogram) histogram).outputPercentileDistribution(System.out, 1.0);
+        } else {
+            ((AbstractHistogram) histogram).outputPercentileDistribution(System.out, 1.0);
+        }
+    }
+
     private void generateInt() {
-        IntCountsHistogram histogram = new IntCountsHistogram(3);
-        processInt(histogram::recordValue);
+        HistogramOperations<AbstractHistogram> operations = integerOperations();
+        AbstractHistogram histogram = processIntChunks(operations::create, hist -> hist::recordValue,
+                HdrHistogramCLI::add, CheckpointedGenerator.histogramState(operations));
         histogram.outputPercentileDistribution(System.out, 1.0);
+        reportFootprint(histogram, operations.footprint(histogram));
     }
 
     private void generateLong() {
-        Histogram histogram = new Histogram(3);
-        processLong(histogram::recordValue);
+        HistogramOperations<AbstractHistogram> operations = integerOperations();
+        AbstractHistogram histogram = processLongChunks(operations::create, hist -> hist::recordValue,
+                HdrHistogramCLI::add, CheckpointedGenerator.histogramState(operations));
         histogram.outputPercentileDistribution(System.out, 1.0);
+        reportFootprint(histogram, operations.footprint(histogram));
     }
 
     private void generateDouble() {
-        DoubleHistogram histogram = new DoubleHistogram(4);
-        processDouble(histogram::recordValue);
+        HistogramOperations<DoubleHistogram> operations = doubleOperations(4);
+        DoubleHistogram histogram = processDoubleChunks(operations::create, hist -> hist::recordValue,
+                (hist, other) -> {
+                    hist.add(other);
+                    return hist;
+                }, CheckpointedGenerator.histogramState(operations));
         histogram.outputPercentileDistribution(System.out, 1.0);
+        reportFootprint(histogram, operations.footprint(histogram));
+    }
+
+    /**
+     * Generates the values with the events oversampled, and prints the weighted
+     * histogram, and the estimates of the tail probabilities. The weights are
+     * counts far larger than 1, so the histogram is a Histogram for int values
+     * too.
+     */
+    private void generateImportance(double factor) {
+        ImportanceSampler.Estimate estimate = recordImportance(factor);
+        estimate.histogram().outputPercentileDistribution(System.out, 1.0);
+        System.out.println();
+        estimate.printStatistics(System.out, factor);
+    }
+
+    ImportanceSampler.Estimate recordImportance(double factor) {
+        if (threads == 1) {
+            ImportanceSampler.Estimate estimate = new ImportanceSampler.Estimate();
+            estimate.sample(new ImportanceSampler(getEventProbabilities(), factor, rng.create(seed)), count);
+            return estimate;
+        }
+        return getChunkedGenerator().generate(count, ImportanceSampler.Estimate::new,
+                (supplier, chunkCount, estimate) -> estimate.sample(
+                        new ImportanceSampler(supplier.eventProbabilities, factor, supplier.random), chunkCount),
+                ImportanceSampler.Estimate::combine);
+    }
+
+    Histogram recordLong() {
+        return processLongChunks(() -> new Histogram(3), hist -> hist::recordValue, HdrHistogramCLI::add,
+                CheckpointedGenerator.histogramState(HistogramOperations.LONG));
+    }
+
+    private static <H extends AbstractHistogram> H add(H histogram, H other) {
+        histogram.add(other);
+        return histogram;
+    }
+
+    @Command(name = "watch", description = "Generate values, printing the rolling percentiles while they're generated")
+    void watch(@Option(names = { "--every" }, paramLabel = "PERIOD", defaultValue = "1s", 
+            converter = IntervalConverter.class, 
+            description = "Print the percentiles of the values recorded every PERIOD of wall clock time, e.g. 1s, "
+                    + "500ms.  Default: ${DEFAULT-VALUE}") Interval every) {
+        validate();
+        rejectHistogramOptions();
+        if (!every.isTime()) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The every value has to be a time, e.g. 1s");
+        }
+        switch (recordedType()) {
+            case INT:
+                try (PercentileWatcher<Histogram> watcher = PercentileWatcher.ofLongs(System.out, every.nanos())) {
+                    processIntChunks(watcher::newChannel, channel -> channel::recordValue, (first, second) -> first);
+                    watcher.finish();
+                }
+                break;
+            case LONG:
+                try (PercentileWatcher<Histogram> watcher = PercentileWatcher.ofLongs(System.out, every.nanos())) {
+                    processLongChunks(watcher::newChannel, channel -> channel::recordValue, (first, second) -> first);
+                    watcher.finish();
+                }
+                break;
+            case DOUBLE:
+                try (PercentileWatcher<DoubleHistogram> watcher = PercentileWatcher.ofDoubles(System.out,
+                        every.nanos())) {
+                    processDoubleChunks(watcher::newChannel, channel -> channel::recordValue,
+                            (first, second) -> first);
+                    watcher.finish();
+                }
+                break;
+            default:
+                throw new RuntimeException("Unknown histogram type: " + histType);
+        }
     }
 
     @Command(name = "url", description = "Generate a link to view a HDR histogram")
-    void generateLink() {
+    void generateLink(@Option(names = { "--scenario" }, paramLabel = "SCENARIO", converter = ScenarioConverter.class, 
+            description = "A named scenario with its own base latency and events, e.g. tuned=50:15,0.009:200:50.  "
+                    + "Repeat it to generate each scenario in parallel and link to all of them as series of one chart, "
+                    + "instead of using --base and --event") List<Scenario> scenarios,
+            @Mixin RateOption rateOption, @Mixin ExactOption exactOption) {
+        rate = rateOption.rate;
+        exact = exactOption.exact;
+        rejectHistogramOptions();
+        if (scenarios != null) {
+            validateScenarios(scenarios);
+            generateScenarioUrl(scenarios);
+            return;
+        }
         validate();
+        if (rate != null) {
+            generateOpenLoopUrl();
+            return;
+        }
+        if (exact) {
+            printUrl(Map.of("Series_A", recordExact(getEventProbabilities())));
+            return;
+        }
 
-        switch (histType) {
+        switch (recordedType()) {
             case INT:
                 generateIntUrl();
                 break;
@@ -245,14 +1266,145 @@ public class HdrHistogramCLI {
         }
     }
 
-    private void generateIntUrl() {
-        IntCountsHistogram histogram = new IntCountsHistogram(3);
-        processInt(histogram::recordValue);
-        ByteBuffer bbuf = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
-        histogram.encodeIntoCompressedByteBuffer(bbuf);
-        bbuf.flip();
-        ByteBuffer base64 = java.util.Base64.getEncoder().encode(bbuf);
+    void validateScenarios(List<Scenario> scenarios) {
+        if (baseOption != null || eventsOption != null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The base and event options can't be used with scenarios, each scenario has its own");
+        }
+        if (input != null || rate != null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The input and rate options can't be used with scenarios");
+        }
+        if (scenarios.stream().map(Scenario::name).distinct().count() < scenarios.size()) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "Each scenario needs a different name");
+        }
+        if (count == null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "Missing required parameter: '<count>'");
+        }
+        if (count < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The count value has to be greater than or equal to 1");
+        }
+        if (threads < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The threads value has to be greater than or equal to 1");
+        }
+        validateScale();
+        if (stats) {
+            runStats = new GenerationStats();
+        }
+    }
 
+    private void generateScenarioUrl(List<Scenario> scenarios) {
+        if (recordedType() == HistType.DOUBLE) {
+            System.out.println("Type Double is not supported by the HdrHistogramWidget");
+            return;
+        }
+        List<AbstractHistogram> histograms = recordScenarios(scenarios);
+        Map<String, AbstractHistogram> series = new LinkedHashMap<>();
+        for (int i = 0; i < scenarios.size(); i++) {
+            series.put(scenarios.get(i).name(), histograms.get(i));
+        }
+        printUrl(series);
+    }
+
+    /**
+     * Generates the values of each scenario on its own thread, from its own
+     * seed drawn from the seed, and split into --threads chunks in the same way
+     * as a single set of events.
+     *
+     * @return the histogram of each scenario, in order
+     */
+    List<AbstractHistogram> recordScenarios(List<Scenario> scenarios) {
+        SplittableRandom root = (seed == null ? new SplittableRandom() : new SplittableRandom(seed));
+        ExecutorService executor = Executors.newFixedThreadPool(scenarios.size());
+        try {
+            List<Future<AbstractHistogram>> futures = new ArrayList<>(scenarios.size());
+            for (Scenario scenario : scenarios) {
+                ChunkedGenerator generator = new ChunkedGenerator(scenario.eventProbabilities(), root.nextLong(),
+                        threads, sampler, rng, runStats);
+                futures.add(executor.submit(() -> recordScenario(scenario, generator)));
+            }
+
+            List<AbstractHistogram> histograms = new ArrayList<>(scenarios.size());
+            for (Future<AbstractHistogram> future : futures) {
+                histograms.add(future.get());
+            }
+            return histograms;
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating scenarios", cause);
+        } catch (ExecutionException cause) {
+            if (cause.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) cause.getCause();
+            }
+            throw new RuntimeException(cause.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AbstractHistogram recordScenario(Scenario scenario, ChunkedGenerator generator) {
+        if (exact) {
+            return recordExact(scenario.eventProbabilities());
+        }
+        switch (histType) {
+            case INT:
+                return generator.generate(count, this::newIntHistogram,
+                        (supplier, chunkCount, hist) -> supplier.forEachInt(chunkCount, hist::recordValue),
+                        HdrHistogramCLI::add);
+            case LONG:
+                return generator.generate(count, () -> new Histogram(3),
+                        (supplier, chunkCount, hist) -> supplier.forEachLong(chunkCount, hist::recordValue),
+                        HdrHistogramCLI::add);
+            case DOUBLE:
+                if (scale != null) {
+                    return generator.generate(count, () -> new Histogram(3),
+                            (supplier, chunkCount, hist) -> supplier.forEachDouble(chunkCount,
+                                    scaled(hist::recordValue)),
+                            HdrHistogramCLI::add);
+                }
+                throw new RuntimeException("Unsupported histogram type for scenarios: " + histType);
+            default:
+                throw new RuntimeException("Unsupported histogram type for scenarios: " + histType);
+        }
+    }
+
+    /**
+     * Computes the distribution of the values of the events, and records the
+     * expected count of each value out of the count.
+     */
+    AbstractHistogram recordExact(List<EventProbability> eventProbabilities) {
+        ExactDistribution distribution;
+        try {
+            distribution = ExactDistribution.of(eventProbabilities);
+        } catch (IllegalArgumentException cause) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), cause.getMessage());
+        }
+        AbstractHistogram histogram = (histType == HistType.INT ? newIntHistogram() : new Histogram(3));
+        return distribution.record(histogram, count);
+    }
+
+    private void generateOpenLoopUrl() {
+        if (histType == HistType.DOUBLE) {
+            System.out.println("Type Double is not supported by the HdrHistogramWidget");
+            return;
+        }
+        OpenLoop<?> loop = simulateOpenLoop();
+        Map<String, AbstractHistogram> series = new LinkedHashMap<>();
+        series.put("Series_A", (AbstractHistogram) loop.raw);
+        series.put("Series_B", (AbstractHistogram) loop.corrected);
+        series.put("Series_C", (AbstractHistogram) loop.response);
+        printUrl(series);
+    }
+
+    /**
+     * Prints a link to the HdrHistogramWidget that charts each histogram as a
+     * series.
+     */
+    private static void printUrl(Map<String, AbstractHistogram> series) {
         // from Twitter, it's possible to tweet Long-based histograms
         // from https://x.com/giltene/status/1329576490967592961?s=21
         // example:
@@ -260,29 +1412,342 @@ public class HdrHistogramCLI {
         // ?unitText=nanoseconds
         // &data.Series_A=<base64-encoded-compressed-histogram>
         // &data.Series_B=<base64-encoded-compressed-histogram>
-        String urlEncodedHist = URLEncoder.encode(new String(base64.array()), StandardCharsets.UTF_8);
-        System.out.println("https://hdrhistogram.github.io/HdrHistogramWidget/?unitText=nanoseconds" +
-                "&data.Series_A=" + urlEncodedHist);
+        StringBuilder url = new StringBuilder("https://hdrhistogram.github.io/HdrHistogramWidget/?unitText=nanoseconds");
+        series.forEach((name, histogram) -> url.append("&data.").append(name).append('=')
+                .append(toUrlParameter(histogram)));
+        System.out.println(url);
     }
 
-    private void generateLongUrl() {
-        Histogram histogram = new Histogram(3);
-        processInt(histogram::recordValue);
+    private static String toUrlParameter(AbstractHistogram histogram) {
+        return URLEncoder.encode(toBase64(histogram), StandardCharsets.UTF_8);
+    }
+
+    private static String toBase64(EncodableHistogram histogram) {
         ByteBuffer bbuf = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
-        histogram.encodeIntoCompressedByteBuffer(bbuf);
+        histogram.encodeIntoCompressedByteBuffer(bbuf, Deflater.DEFAULT_COMPRESSION);
         bbuf.flip();
         ByteBuffer base64 = java.util.Base64.getEncoder().encode(bbuf);
+        return new String(base64.array());
+    }
 
-        // from Twitter, it's possible to tweet Long-based histograms
-        // from https://x.com/giltene/status/1329576490967592961?s=21
-        // example:
-        // https://hdrhistogram.github.io/HdrHistogramWidget/
-        // ?unitText=nanoseconds
-        // &data.Series_A=<base64-encoded-compressed-histogram>
-        // &data.Series_B=<base64-encoded-compressed-histogram>
-        String urlEncodedHist = URLEncoder.encode(new String(base64.array()), StandardCharsets.UTF_8);
-        System.out.println("https://hdrhistogram.github.io/HdrHistogramWidget/?unitText=nanoseconds" +
-                "&data.Series_A=" + urlEncodedHist);
+    @Command(name = "batch", description = "Run scenarios read one per line, from a file, standard input or a Unix "
+            + "domain socket, on a pool of workers, and write one result line per scenario")
+    int batch(@Option(names = { "--scenarios" }, paramLabel = "FILE", 
+            description = "Read the scenarios from FILE, or from standard input for -, one per line in the format of "
+                    + "url's --scenario, e.g. tuned=50:15,0.009:200:50.  Blank lines and lines starting with # are "
+                    + "skipped") Path scenarioFile,
+            @Option(names = { "--socket" }, paramLabel = "PATH", 
+            description = "Serve the scenarios of each connection to a Unix domain socket created at PATH, "
+                    + "until stopped, instead of reading them from a file") Path socket,
+            @Option(names = { "--workers" }, paramLabel = "N", 
+            description = "The number of scenarios to run at once.  Default: the number of processors divided by "
+                    + "--threads") Integer workers,
+            @Option(names = { "--output-format" }, paramLabel = "OUTPUT", defaultValue = "SUMMARY", 
+            description = "How to write each scenario's histogram, after its name.  summary writes its count, "
+                    + "p50, p99, p99.9, p99.99 and max; blob writes it base64 encoded and compressed.  "
+                    + "valid values are summary or blob") BatchRunner.Output output)
+            throws IOException {
+        rejectHistogramOptions();
+        validateScenarios(List.of());
+        if ((scenarioFile == null) == (socket == null)) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "Either the scenarios or the socket option is required");
+        }
+        if (recordedType() == HistType.DOUBLE) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The batch sub-command only supports int and long values, and double values with --scale");
+        }
+        if (workers == null) {
+            workers = Math.max(1, Runtime.getRuntime().availableProcessors() / threads);
+        }
+        if (workers < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The workers value has to be greater than or equal to 1");
+        }
+
+        try (BatchRunner runner = new BatchRunner(workers, seed, output, (scenario, scenarioSeed) -> recordScenario(
+                scenario, new ChunkedGenerator(scenario.eventProbabilities(), scenarioSeed, threads, sampler, rng,
+                        runStats)))) {
+            if (socket != null) {
+                runner.serve(socket, System.err);
+                return 0;
+            }
+            int failures;
+            if ("-".equals(scenarioFile.toString())) {
+                failures = runner.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        System.out);
+            } else {
+                try (BufferedReader in = Files.newBufferedReader(scenarioFile)) {
+                    failures = runner.run(in, System.out);
+                }
+            }
+            if (failures > 0) {
+                System.err.printf("%d scenarios failed%n", failures);
+                return 1;
+            }
+            return 0;
+        } catch (IllegalArgumentException cause) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), cause.getMessage());
+        }
+    }
+
+    @Command(name = "merge", description = "Merge encoded histograms read from files, directories of files, "
+            + "or HdrHistogram logs into one histogram")
+    void merge(@Option(names = { "--output-format" }, paramLabel = "OUTPUT", defaultValue = "TABLE", 
+            description = "How to output the merged histogram.  table prints its percentile distribution; "
+                    + "blob prints it base64 encoded and compressed; url prints a link to view it.  "
+                    + "valid values are table, blob or url") MergeOutput output,
+            @Parameters(paramLabel = "FILE", arity = "1..*", 
+            description = "The files of encoded histograms to merge, binary, base64 (one per line) or HdrHistogram "
+                    + "logs, or directories of them") List<Path> paths)
+            throws IOException {
+        if (threads < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The threads value has to be greater than or equal to 1");
+        }
+        List<Path> files = HistogramFiles.expand(paths);
+        long start = System.nanoTime();
+        HistogramFiles.Merge merge = HistogramFiles.merge(files, threads);
+        System.err.printf("Merged %d histograms from %d files on %d threads in %.1f ms%n", merge.histograms(),
+                merge.files(), merge.workers(), (System.nanoTime() - start) / 1e6);
+        if (merge.histogram() == null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), "The files don't hold any histograms");
+        }
+
+        switch (output) {
+            case TABLE:
+                outputPercentileDistribution(merge.histogram());
+                break;
+            case BLOB:
+                System.out.println(toBase64(merge.histogram()));
+                break;
+            case URL:
+                if (merge.histogram() instanceof DoubleHistogram) {
+                    System.out.println("Type Double is not supported by the HdrHistogramWidget");
+                    break;
+                }
+                printUrl(Map.of("Series_A", (AbstractHistogram) merge.histogram()));
+                break;
+            default:
+                throw new RuntimeException("Unknown output: " + output);
+        }
+    }
+
+    @Command(name = "query", description = "Answer percentile, rank and count queries about the histograms of a file, "
+            + "from an index of their cumulative counts")
+    int query(@Option(names = { "-q", "--query" }, paramLabel = "QUERY", converter = IndexQueryConverter.class, 
+            description = "A query: p:PERCENTILE for the value at a percentile, rank:VALUE for the percentile at or "
+                    + "below a value, or count:LOW:HIGH for the count of the values between two values") List<IndexQuery> queries,
+            @Option(names = { "--queries" }, paramLabel = "FILE", 
+            description = "Read the queries from FILE, or from standard input for -, one per line.  Blank lines and "
+                    + "lines starting with # are skipped") Path queryFile,
+            @Option(names = { "--cache" }, 
+            description = "Save the index next to the file, as FILE.idx, and load it from there instead of reading "
+                    + "the histograms, for as long as the file is unchanged") boolean cache,
+            @Parameters(paramLabel = "FILE", arity = "1", 
+            description = "The file of encoded histograms to query, binary, base64 (one per line) or an HdrHistogram "
+                    + "log, whose histograms are merged") Path file)
+            throws IOException {
+        if (threads < 1) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The threads value has to be greater than or equal to 1");
+        }
+        if (queries == null && queryFile == null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "Either the query or the queries option is required");
+        }
+        HistogramIndex index = loadIndex(file, cache);
+        if (queries != null) {
+            for (IndexQuery query : queries) {
+                System.out.println(query + " " + query.answer(index));
+            }
+        }
+        if (queryFile == null) {
+            return 0;
+        }
+        int failures;
+        if ("-".equals(queryFile.toString())) {
+            failures = answerQueries(index, new BufferedReader(new InputStreamReader(System.in,
+                    StandardCharsets.UTF_8)));
+        } else {
+            try (BufferedReader in = Files.newBufferedReader(queryFile)) {
+                failures = answerQueries(index, in);
+            }
+        }
+        if (failures > 0) {
+            System.err.printf("%d queries failed%n", failures);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Loads the index of the file from its cache, or builds it from the
+     * merged histograms of the file, and with --cache, saves it for the next
+     * query.
+     */
+    private HistogramIndex loadIndex(Path file, boolean cache) throws IOException {
+        Path cached = file.resolveSibling(file.getFileName() + ".idx");
+        long start = System.nanoTime();
+        if (cache) {
+            HistogramIndex index = HistogramIndex.load(cached, file);
+            if (index != null) {
+                System.err.printf("Loaded the index of %d buckets from %s in %.1f ms%n", index.buckets(), cached,
+                        (System.nanoTime() - start) / 1e6);
+                return index;
+            }
+        }
+        HistogramFiles.Merge merge = HistogramFiles.merge(List.of(file), threads);
+        if (merge.histogram() == null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), "The file doesn't hold any histograms");
+        }
+        HistogramIndex index = HistogramIndex.of(merge.histogram());
+        System.err.printf("Indexed %d buckets of %d histograms in %.1f ms%n", index.buckets(), merge.histograms(),
+                (System.nanoTime() - start) / 1e6);
+        if (cache) {
+            index.save(cached, file);
+        }
+        return index;
+    }
+
+    /**
+     * Answers the queries of the lines until the end of the input, skipping
+     * blank lines and # comments, each with a line of its own, or of its error.
+     *
+     * @return the number of queries that failed
+     */
+    private static int answerQueries(HistogramIndex index, BufferedReader in) throws IOException {
+        IndexQueryConverter converter = new IndexQueryConverter();
+        int failures = 0;
+        int lineNumber = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                IndexQuery query = converter.convert(line);
+                System.out.println(query + " " + query.answer(index));
+            } catch (Exception cause) {
+                System.out.println("error: line " + lineNumber + ": " + cause.getMessage());
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    @Command(name = "diff", description = "Compare a candidate histogram with a baseline, and fail if its latency "
+            + "regressed by more than the thresholds")
+    int diff(@Option(names = { "--baseline" }, paramLabel = "FILE", 
+            description = "The file of the baseline's encoded histograms, in any of merge's formats, which are merged") Path baselineFile,
+            @Option(names = { "--candidate" }, paramLabel = "FILE", 
+            description = "The file of the candidate's encoded histograms") Path candidateFile,
+            @Option(names = { "--scenario" }, paramLabel = "SCENARIO", converter = ScenarioConverter.class, 
+            description = "Generate the baseline from the first scenario and the candidate from the second, "
+                    + "e.g. --scenario before=50:15,0.009:200:50 --scenario after=50:15,0.01:200:50, instead of "
+                    + "reading them from files") List<Scenario> scenarios,
+            @Option(names = { "--percentiles" }, paramLabel = "PERCENTILE", split = ",", 
+            defaultValue = "50,90,99,99.9,99.99,100", 
+            description = "The percentiles to compare.  Default: ${DEFAULT-VALUE}") List<Double> percentiles,
+            @Option(names = { "--max-increase" }, paramLabel = "PERCENTILE=PCT", 
+            description = "Fail if the value at PERCENTILE increased by more than PCT percent of the baseline's, "
+                    + "e.g. 99.9=10") Map<Double, Double> maxIncreases,
+            @Option(names = { "--max-ks" }, paramLabel = "D", 
+            description = "Fail if the Kolmogorov-Smirnov statistic is more than D, from 0 to 1") Double maxKs,
+            @Option(names = { "--max-wasserstein" }, paramLabel = "DISTANCE", 
+            description = "Fail if the Wasserstein distance is more than DISTANCE, in the unit of the values") Double maxWasserstein) {
+        rejectHistogramOptions();
+        if (maxIncreases == null) {
+            maxIncreases = Map.of();
+        }
+        TreeSet<Double> compared = new TreeSet<>(percentiles);
+        compared.addAll(maxIncreases.keySet());
+        for (double percentile : compared) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The percentiles have to be from 0 to 100");
+            }
+        }
+        if (maxKs != null && !(maxKs >= 0 && maxKs <= 1)) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The max-ks value has to be from 0 to 1");
+        }
+        if (maxWasserstein != null && !(maxWasserstein >= 0)) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                    "The max-wasserstein value has to be greater than or equal to 0");
+        }
+
+        HistogramIndex baseline;
+        HistogramIndex candidate;
+        if (scenarios != null) {
+            if (baselineFile != null || candidateFile != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The baseline and candidate options can't be used with scenarios");
+            }
+            if (scenarios.size() != 2) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Two scenarios are needed, the baseline and then the candidate");
+            }
+            validateScenarios(scenarios);
+            if (recordedType() == HistType.DOUBLE) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Scenarios only support int and long values, and double values with --scale");
+            }
+            List<AbstractHistogram> histograms = recordScenarios(scenarios);
+            baseline = HistogramIndex.of(histograms.get(0));
+            candidate = HistogramIndex.of(histograms.get(1));
+        } else {
+            if (baselineFile == null || candidateFile == null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "Either both the baseline and candidate options, or two scenarios, are required");
+            }
+            if (count != null) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The count parameter can only be used with scenarios");
+            }
+            if (threads < 1) {
+                throw new ParameterException(HdrHistogramCLI.spec.commandLine(),
+                        "The threads value has to be greater than or equal to 1");
+            }
+            baseline = readIndex(baselineFile);
+            candidate = readIndex(candidateFile);
+        }
+
+        HistogramDiff diff;
+        try {
+            diff = HistogramDiff.of(baseline, candidate);
+        } catch (IllegalArgumentException cause) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), cause.getMessage());
+        }
+        diff.print(System.out, new ArrayList<>(compared));
+        List<String> regressions = diff.regressions(maxIncreases, maxKs, maxWasserstein);
+        if (regressions.isEmpty()) {
+            System.out.println("No regression");
+            return 0;
+        }
+        for (String regression : regressions) {
+            System.out.println("Regression: " + regression);
+        }
+        return 1;
+    }
+
+    private HistogramIndex readIndex(Path file) {
+        HistogramFiles.Merge merge = HistogramFiles.merge(List.of(file), threads);
+        if (merge.histogram() == null) {
+            throw new ParameterException(HdrHistogramCLI.spec.commandLine(), file + " doesn't hold any histograms");
+        }
+        return HistogramIndex.of(merge.histogram());
+    }
+
+    private void generateIntUrl() {
+        AbstractHistogram histogram = processIntChunks(this::newIntHistogram, hist -> hist::recordValue,
+                HdrHistogramCLI::add);
+        printUrl(Map.of("Series_A", histogram));
+    }
+
+    private void generateLongUrl() {
+        printUrl(Map.of("Series_A", recordLong()));
     }
 
 }
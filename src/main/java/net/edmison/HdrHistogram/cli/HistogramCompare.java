@@ -0,0 +1,197 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.EncodableHistogram;
+
+/**
+ * Verifies that merging histograms gives the same result as recording all of
+ * the values into a single histogram.
+ * <p>
+ * Every value is recorded into a histogram of all of the values, and into a
+ * batch histogram. Whenever a batch is full, the batch histogram is encoded,
+ * decoded, and added to the merged histogram, and then reset for the next
+ * batch. The encode buffer and the batch histogram are reused from batch to
+ * batch; the decoded histogram is the only allocation per batch, since
+ * HdrHistogram can only decode into a new histogram.
+ */
+public class HistogramCompare<H extends EncodableHistogram> {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final HistogramOperations<H> operations;
+    private final int batchSize;
+
+    final H allHistogram;
+    final H mergedHistogram;
+    private final H batchHistogram;
+    private ByteBuffer encodeBuffer = ByteBuffer.allocate(0);
+    private int batchCount = 0;
+
+    long valueCount = 0;
+    long mergeCount = 0;
+    long bytesEncoded = 0;
+    long encodeNanos = 0;
+    long decodeNanos = 0;
+    long addNanos = 0;
+
+    public HistogramCompare(HistogramOperations<H> operations) {
+        this(operations, DEFAULT_BATCH_SIZE);
+    }
+
+    public HistogramCompare(HistogramOperations<H> operations, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be greater than or equal to 1");
+        }
+        this.operations = operations;
+        this.batchSize = batchSize;
+        this.allHistogram = operations.create();
+        this.mergedHistogram = operations.create();
+        this.batchHistogram = operations.create();
+    }
+
+    public void accrue(long value) {
+        operations.recordValue(allHistogram, value);
+        operations.recordValue(batchHistogram, value);
+        accrued();
+    }
+
+    public void accrue(double value) {
+        operations.recordValue(allHistogram, value);
+        operations.recordValue(batchHistogram, value);
+        accrued();
+    }
+
+    private void accrued() {
+        valueCount++;
+        if (++batchCount == batchSize) {
+            reduce();
+        }
+    }
+
+    private void reduce() {
+        if (batchCount > 0) {
+            merge(batchHistogram);
+            operations.reset(batchHistogram);
+            batchCount = 0;
+        }
+    }
+
+    /**
+     * Encodes the histogram into the reused encode buffer, decodes it, and adds
+     * the decoded histogram to the merged histogram.
+     */
+    private void merge(H histogram) {
+        FlightEvents.Merge event = new FlightEvents.Merge();
+        event.begin();
+        long start = System.nanoTime();
+        int needed = histogram.getNeededByteBufferCapacity();
+        if (encodeBuffer.capacity() < needed) {
+            encodeBuffer = ByteBuffer.allocate(Math.max(needed, encodeBuffer.capacity() * 2));
+        }
+        encodeBuffer.clear();
+        int bytes = operations.encode(histogram, encodeBuffer);
+        bytesEncoded += bytes;
+        encodeBuffer.flip();
+        long encoded = System.nanoTime();
+        H decodedHistogram = operations.decode(encodeBuffer);
+        long decoded = System.nanoTime();
+        operations.add(mergedHistogram, decodedHistogram);
+        long added = System.nanoTime();
+
+        encodeNanos += encoded - start;
+        decodeNanos += decoded - encoded;
+        addNanos += added - decoded;
+        mergeCount++;
+        event.end();
+        if (event.shouldCommit()) {
+            event.merges = 1;
+            event.bytesEncoded = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Combines another comparison into this one. The other comparison's merged
+     * histogram is passed through the same encode, decode and merge cycle as a
+     * batch, so the combined result still verifies the merge.
+     *
+     * @param other the comparison to combine into this one
+     * @return this comparison
+     */
+    public HistogramCompare<H> combine(HistogramCompare<H> other) {
+        other.reduce();
+        operations.add(allHistogram, other.allHistogram);
+        merge(other.mergedHistogram);
+        valueCount += other.valueCount;
+        mergeCount += other.mergeCount;
+        bytesEncoded += other.bytesEncoded;
+        encodeNanos += other.encodeNanos;
+        decodeNanos += other.decodeNanos;
+        addNanos += other.addNanos;
+        return this;
+    }
+
+    /**
+     * The state of a comparison, for checkpoints: its histogram of all of the
+     * values, its merged histogram, once its last partial batch is merged, and
+     * its statistics.
+     */
+    public static <H extends EncodableHistogram> CheckpointedGenerator.State<HistogramCompare<H>> state(
+            HistogramOperations<H> operations, int batchSize) {
+        return new CheckpointedGenerator.State<HistogramCompare<H>>() {
+            @Override
+            public void save(HistogramCompare<H> compare, Properties properties) {
+                compare.reduce();
+                properties.setProperty("all", CheckpointedGenerator.encode(operations, compare.allHistogram));
+                properties.setProperty("merged", CheckpointedGenerator.encode(operations, compare.mergedHistogram));
+                properties.setProperty("values", Long.toString(compare.valueCount));
+                properties.setProperty("merges", Long.toString(compare.mergeCount));
+                properties.setProperty("bytesEncoded", Long.toString(compare.bytesEncoded));
+                properties.setProperty("encodeNanos", Long.toString(compare.encodeNanos));
+                properties.setProperty("decodeNanos", Long.toString(compare.decodeNanos));
+                properties.setProperty("addNanos", Long.toString(compare.addNanos));
+            }
+
+            @Override
+            public HistogramCompare<H> load(Properties properties) {
+                HistogramCompare<H> compare = new HistogramCompare<>(operations, batchSize);
+                operations.add(compare.allHistogram,
+                        CheckpointedGenerator.decode(operations, properties.getProperty("all")));
+                operations.add(compare.mergedHistogram,
+                        CheckpointedGenerator.decode(operations, properties.getProperty("merged")));
+                compare.valueCount = Long.parseLong(properties.getProperty("values", "0"));
+                compare.mergeCount = Long.parseLong(properties.getProperty("merges", "0"));
+                compare.bytesEncoded = Long.parseLong(properties.getProperty("bytesEncoded", "0"));
+                compare.encodeNanos = Long.parseLong(properties.getProperty("encodeNanos", "0"));
+                compare.decodeNanos = Long.parseLong(properties.getProperty("decodeNanos", "0"));
+                compare.addNanos = Long.parseLong(properties.getProperty("addNanos", "0"));
+                return compare;
+            }
+        };
+    }
+
+    public boolean compare() {
+        reduce();
+        return allHistogram.equals(mergedHistogram);
+    }
+
+    /**
+     * Prints the number of merges, the bytes encoded, the time spent in each step
+     * of the merges, and the memory footprint of the histograms.
+     */
+    public void printStatistics(PrintStream out) {
+        out.printf("Values: %d, max value: %s%n", valueCount, allHistogram.getMaxValueAsDouble());
+        out.printf("Merges: %d, bytes encoded: %d (%.1f bytes per merge)%n", mergeCount, bytesEncoded,
+                mergeCount == 0 ? 0.0 : (double) bytesEncoded / mergeCount);
+        out.printf("Time spent encoding: %d ms, decoding: %d ms, adding: %d ms%n",
+                TimeUnit.NANOSECONDS.toMillis(encodeNanos), TimeUnit.NANOSECONDS.toMillis(decodeNanos),
+                TimeUnit.NANOSECONDS.toMillis(addNanos));
+        out.printf("Footprint of each %s: all values %d bytes, merged %d bytes, batch %d bytes%n",
+                allHistogram.getClass().getSimpleName(), operations.footprint(allHistogram),
+                operations.footprint(mergedHistogram), operations.footprint(batchHistogram));
+    }
+}
@@ -0,0 +1,152 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The differences between a baseline and a candidate histogram, for deciding
+ * whether the candidate's latency has regressed: the change in the value at
+ * each percentile, the two-sample Kolmogorov-Smirnov statistic, the largest
+ * difference between the fractions of the values at or below any value, and
+ * the Wasserstein distance, the area between the two cumulative
+ * distributions, which is how far, on average, each value has to move to turn
+ * one distribution into the other.
+ * <p>
+ * Both statistics are computed from the histograms' indexes in a single walk
+ * through their non-empty buckets in order of value, each bucket standing for
+ * all of its values at its median equivalent value, so a histogram of 10^10
+ * values costs no more than one of 10 with the same buckets.
+ */
+public final class HistogramDiff {
+
+    private final HistogramIndex baseline;
+    private final HistogramIndex candidate;
+    private double ks = 0;
+    private double ksValue = 0;
+    private double wasserstein = 0;
+
+    private HistogramDiff(HistogramIndex baseline, HistogramIndex candidate) {
+        this.baseline = baseline;
+        this.candidate = candidate;
+    }
+
+    /**
+     * Compares the histograms of the indexes, neither of which may be empty.
+     */
+    public static HistogramDiff of(HistogramIndex baseline, HistogramIndex candidate) {
+        if (baseline.getTotalCount() == 0 || candidate.getTotalCount() == 0) {
+            throw new IllegalArgumentException("Histograms without any values can't be compared");
+        }
+        HistogramDiff diff = new HistogramDiff(baseline, candidate);
+        diff.walk();
+        return diff;
+    }
+
+    private void walk() {
+        double baselineTotal = baseline.getTotalCount();
+        double candidateTotal = candidate.getTotalCount();
+        int i = 0;
+        int j = 0;
+        double baselineFraction = 0;
+        double candidateFraction = 0;
+        double previous = 0;
+        while (i < baseline.buckets() || j < candidate.buckets()) {
+            double baselineValue = (i < baseline.buckets() ? baseline.medianEquivalentValue(i)
+                    : Double.POSITIVE_INFINITY);
+            double candidateValue = (j < candidate.buckets() ? candidate.medianEquivalentValue(j)
+                    : Double.POSITIVE_INFINITY);
+            double value = Math.min(baselineValue, candidateValue);
+            // the distributions are flat between one bucket's value and the next
+            wasserstein += Math.abs(baselineFraction - candidateFraction) * (value - previous);
+            if (baselineValue == value) {
+                baselineFraction = baseline.cumulativeCount(i++) / baselineTotal;
+            }
+            if (candidateValue == value) {
+                candidateFraction = candidate.cumulativeCount(j++) / candidateTotal;
+            }
+            double difference = Math.abs(baselineFraction - candidateFraction);
+            if (difference > ks) {
+                ks = difference;
+                ksValue = value;
+            }
+            previous = value;
+        }
+    }
+
+    /**
+     * The Kolmogorov-Smirnov statistic, from 0 for the same distribution to 1
+     * for distributions that don't overlap.
+     */
+    public double ks() {
+        return ks;
+    }
+
+    /**
+     * The Wasserstein distance, in the unit of the values.
+     */
+    public double wasserstein() {
+        return wasserstein;
+    }
+
+    /**
+     * The change in the value at the percentile, as a percentage of the
+     * baseline's value.
+     */
+    public double change(double percentile) {
+        double baselineValue = baseline.getValueAtPercentile(percentile);
+        double candidateValue = candidate.getValueAtPercentile(percentile);
+        if (baselineValue == 0) {
+            return (candidateValue == 0 ? 0 : Double.POSITIVE_INFINITY);
+        }
+        return (candidateValue - baselineValue) / baselineValue * 100;
+    }
+
+    /**
+     * Prints the values of both histograms at each percentile and their
+     * changes, followed by the statistics.
+     */
+    public void print(PrintStream out, List<Double> percentiles) {
+        out.printf("%12s %14s %14s %14s %10s%n", "Percentile", "Baseline", "Candidate", "Delta", "Change");
+        for (double percentile : percentiles) {
+            double baselineValue = baseline.getValueAtPercentile(percentile);
+            double candidateValue = candidate.getValueAtPercentile(percentile);
+            out.printf("%12s %14.3f %14.3f %+14.3f %+9.2f%%%n", percentile, baselineValue, candidateValue,
+                    candidateValue - baselineValue, change(percentile));
+        }
+        out.printf("Count: baseline %d, candidate %d%n", baseline.getTotalCount(), candidate.getTotalCount());
+        out.printf("Kolmogorov-Smirnov statistic: %.6f, at %.3f%n", ks, ksValue);
+        out.printf("Wasserstein distance: %.3f%n", wasserstein);
+    }
+
+    /**
+     * The thresholds that the candidate exceeds.
+     *
+     * @param maxIncreases   the largest increase allowed in the value at each
+     *                       percentile, as a percentage of the baseline's
+     * @param maxKs          the largest Kolmogorov-Smirnov statistic allowed,
+     *                       or null for any
+     * @param maxWasserstein the largest Wasserstein distance allowed, or null
+     *                       for any
+     * @return a description of each threshold exceeded
+     */
+    public List<String> regressions(Map<Double, Double> maxIncreases, Double maxKs, Double maxWasserstein) {
+        List<String> regressions = new ArrayList<>();
+        maxIncreases.forEach((percentile, maxIncrease) -> {
+            double change = change(percentile);
+            if (change > maxIncrease) {
+                regressions.add(String.format("p%s increased by %.2f%%, more than %s%%", percentile, change,
+                        maxIncrease));
+            }
+        });
+        if (maxKs != null && ks > maxKs) {
+            regressions.add(String.format("The Kolmogorov-Smirnov statistic is %.6f, more than %s", ks, maxKs));
+        }
+        if (maxWasserstein != null && wasserstein > maxWasserstein) {
+            regressions.add(String.format("The Wasserstein distance is %.3f, more than %s", wasserstein,
+                    maxWasserstein));
+        }
+        return regressions;
+    }
+}
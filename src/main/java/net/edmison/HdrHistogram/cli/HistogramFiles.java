@@ -0,0 +1,389 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+
+/**
+ * Reads encoded histograms from files, and merges them.
+ * <p>
+ * Each file is memory-mapped, and holds either binary encoded histograms, one
+ * after another, compressed or not; base64 encoded compressed histograms, one
+ * per line; or an HdrHistogram log of interval histograms. The format is
+ * detected from the start of the file: binary files start with an encoding
+ * cookie, base64 files start with the base64 of one, and any other file is
+ * read as a log.
+ * <p>
+ * Merging decodes the histograms on a pool of workers, each of which adds every
+ * histogram it decodes into its own total, and then drops it, so that only one
+ * decoded histogram per worker is held at a time. The binary files are split
+ * into their histograms before the workers start, so that even the histograms
+ * of a single file are decoded in parallel, and the histograms and the text
+ * files are shared out to the workers as they become free.
+ */
+public final class HistogramFiles {
+
+    /**
+     * The total of all of the histograms of the files, and the number of
+     * workers that read any of them.
+     */
+    public record Merge(EncodableHistogram histogram, int files, long histograms, int workers) {
+    }
+
+    private static final int DOUBLE_COOKIE = 0x0c72124e;
+    private static final int DOUBLE_COMPRESSED_COOKIE = 0x0c72124f;
+    private static final int V0_COMPRESSED_COOKIE_BASE = 0x1c849309;
+    private static final int V1_COOKIE_BASE = 0x1c849301;
+    private static final int V1_COMPRESSED_COOKIE_BASE = 0x1c849302;
+    private static final int V2_COOKIE_BASE = 0x1c849303;
+    private static final int V2_COMPRESSED_COOKIE_BASE = 0x1c849304;
+
+    /*
+     * The size of the header of an uncompressed V1 or V2 histogram, ahead of its
+     * counts, and of the header a DoubleHistogram adds ahead of its values
+     * histogram.
+     */
+    private static final int HEADER_SIZE = 40;
+    private static final int DOUBLE_HEADER_SIZE = 16;
+
+    private HistogramFiles() {
+    }
+
+    /**
+     * Expands each directory into the regular files beneath it, in path order.
+     */
+    public static List<Path> expand(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads each of the histograms of the file in turn.
+     */
+    public static void forEach(Path path, Consumer<EncodableHistogram> action) throws IOException {
+        ByteBuffer mapped = map(path);
+        if (isBinary(mapped)) {
+            for (ByteBuffer encoded : split(mapped, path)) {
+                action.accept(decode(encoded, path));
+            }
+        } else {
+            forEachText(mapped, path, action);
+        }
+    }
+
+    /**
+     * Merges all of the histograms of the files on a pool of workers.
+     *
+     * @param files   the files to read
+     * @param threads the number of workers
+     * @return the total, whose histogram is null if the files hold none
+     */
+    public static Merge merge(List<Path> files, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than or equal to 1");
+        }
+        // all of the units are queued up front, so a worker only stops once there are none left to read
+        Queue<Unit> units = new ConcurrentLinkedQueue<>();
+        try {
+            for (Path file : files) {
+                addUnits(file, units);
+            }
+        } catch (IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Total>> futures = new ArrayList<>(threads);
+            for (int worker = 0; worker < threads; worker++) {
+                futures.add(executor.submit(() -> {
+                    Total total = new Total();
+                    Unit unit;
+                    while ((unit = units.poll()) != null) {
+                        unit.read(total);
+                    }
+                    return total;
+                }));
+            }
+
+            Total merged = new Total();
+            long histograms = 0;
+            int workers = 0;
+            for (Future<Total> future : futures) {
+                Total total = future.get();
+                if (total.histogram != null) {
+                    merged.add(total.histogram);
+                    workers++;
+                }
+                histograms += total.histograms;
+            }
+            return new Merge(merged.histogram, files.size(), histograms, workers);
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while merging histograms", cause);
+        } catch (ExecutionException cause) {
+            if (cause.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause.getCause());
+            }
+            if (cause.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) cause.getCause();
+            }
+            throw new RuntimeException(cause.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A part of the input, either a whole file or a single histogram of a
+     * binary file, read by one worker into its total.
+     */
+    @FunctionalInterface
+    private interface Unit {
+        void read(Total total) throws IOException;
+    }
+
+    /**
+     * A worker's total of the histograms it has read.
+     */
+    private static final class Total {
+        EncodableHistogram histogram;
+        long histograms = 0;
+
+        void add(EncodableHistogram other) {
+            histograms++;
+            if (histogram == null) {
+                // each histogram is decoded afresh, so the first can be the total
+                histogram = other;
+            } else if (histogram instanceof AbstractHistogram && other instanceof AbstractHistogram) {
+                ((AbstractHistogram) histogram).add((AbstractHistogram) other);
+            } else if (histogram instanceof DoubleHistogram && other instanceof DoubleHistogram) {
+                ((DoubleHistogram) histogram).add((DoubleHistogram) other);
+            } else {
+                throw new IllegalArgumentException("Integer and double histograms can't be merged together");
+            }
+        }
+    }
+
+    /**
+     * Queues a unit for each histogram of a binary file, without decoding them,
+     * or a single unit for a text file.
+     */
+    private static void addUnits(Path file, Queue<Unit> units) throws IOException {
+        ByteBuffer mapped = map(file);
+        if (!isBinary(mapped)) {
+            units.add(total -> forEachText(mapped, file, total::add));
+            return;
+        }
+        for (ByteBuffer histogram : split(mapped, file)) {
+            units.add(total -> total.add(decode(histogram, file)));
+        }
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to read as histograms");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static boolean isBinary(ByteBuffer buffer) {
+        return buffer.remaining() >= Integer.BYTES && isCookie(buffer.getInt(buffer.position()));
+    }
+
+    private static boolean isCookie(int cookie) {
+        return cookie == DOUBLE_COOKIE || cookie == DOUBLE_COMPRESSED_COOKIE || encodedLength(cookie, 0) >= 0;
+    }
+
+    /**
+     * The length of the encoded histogram of an integer histogram cookie, from
+     * the length field that follows it, or -1 if it isn't one.
+     */
+    private static long encodedLength(int cookie, int lengthField) {
+        switch (cookie & ~0xf0) {
+            case V0_COMPRESSED_COOKIE_BASE:
+            case V1_COMPRESSED_COOKIE_BASE:
+            case V2_COMPRESSED_COOKIE_BASE:
+                return 8L + lengthField;
+            case V1_COOKIE_BASE:
+            case V2_COOKIE_BASE:
+                return (long) HEADER_SIZE + lengthField;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Splits binary encoded histograms, one after another, into one buffer
+     * each, without decoding them.
+     */
+    static List<ByteBuffer> split(ByteBuffer buffer, Path path) throws IOException {
+        List<ByteBuffer> histograms = new ArrayList<>();
+        int position = buffer.position();
+        while (position < buffer.limit()) {
+            int start = position;
+            int cookie = readInt(buffer, position, path);
+            if (cookie == DOUBLE_COOKIE || cookie == DOUBLE_COMPRESSED_COOKIE) {
+                // the values histogram follows the DoubleHistogram's own header
+                position += DOUBLE_HEADER_SIZE;
+                cookie = readInt(buffer, position, path);
+            }
+            long length = encodedLength(cookie, readInt(buffer, position + Integer.BYTES, path));
+            if (length < 0 || position + length > buffer.limit()) {
+                throw new IOException(path + " has no valid encoded histogram at offset " + start);
+            }
+            position += (int) length;
+            histograms.add(buffer.slice(start, position - start));
+        }
+        return histograms;
+    }
+
+    private static int readInt(ByteBuffer buffer, int position, Path path) throws IOException {
+        if (position + Integer.BYTES > buffer.limit()) {
+            throw new IOException(path + " ends part way through an encoded histogram");
+        }
+        return buffer.getInt(position);
+    }
+
+    /**
+     * Decodes a single binary encoded histogram.
+     */
+    static EncodableHistogram decode(ByteBuffer encoded, Path path) throws IOException {
+        int cookie = encoded.getInt(encoded.position());
+        try {
+            if (cookie == DOUBLE_COMPRESSED_COOKIE) {
+                return DoubleHistogram.decodeFromCompressedByteBuffer(encoded, 0);
+            } else if (cookie == DOUBLE_COOKIE) {
+                return DoubleHistogram.decodeFromByteBuffer(encoded, 0);
+            } else if (encodedLength(cookie, 0) > 8) {
+                return Histogram.decodeFromByteBuffer(encoded, 0);
+            } else {
+                return Histogram.decodeFromCompressedByteBuffer(encoded, 0);
+            }
+        } catch (DataFormatException | RuntimeException cause) {
+            throw new IOException(path + " has a histogram that can't be decoded: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static void forEachText(ByteBuffer buffer, Path path, Consumer<EncodableHistogram> action)
+            throws IOException {
+        String first = firstToken(buffer);
+        if (first.startsWith("HIST") || first.startsWith("DHIS")) {
+            forEachBase64(buffer, path, action);
+            return;
+        }
+        HistogramLogReader reader = new HistogramLogReader(new ByteBufferInputStream(buffer.duplicate()));
+        try {
+            EncodableHistogram histogram;
+            while ((histogram = reader.nextIntervalHistogram()) != null) {
+                action.accept(histogram);
+            }
+        } catch (RuntimeException cause) {
+            throw new IOException(path + " isn't a valid histogram log: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static void forEachBase64(ByteBuffer buffer, Path path, Consumer<EncodableHistogram> action)
+            throws IOException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        int position = buffer.position();
+        while (position < buffer.limit()) {
+            while (position < buffer.limit() && ValueReader.isWhitespace(buffer.get(position))) {
+                position++;
+            }
+            int start = position;
+            while (position < buffer.limit() && !ValueReader.isWhitespace(buffer.get(position))) {
+                position++;
+            }
+            if (position > start) {
+                byte[] token = new byte[position - start];
+                buffer.get(start, token);
+                ByteBuffer encoded;
+                try {
+                    encoded = ByteBuffer.wrap(decoder.decode(token));
+                } catch (IllegalArgumentException cause) {
+                    throw new IOException(path + " has an invalid base64 histogram at offset " + start, cause);
+                }
+                action.accept(decode(encoded, path));
+            }
+        }
+    }
+
+    private static String firstToken(ByteBuffer buffer) {
+        int position = buffer.position();
+        while (position < buffer.limit() && ValueReader.isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        int end = Math.min(position + 4, buffer.limit());
+        byte[] token = new byte[end - position];
+        buffer.get(position, token);
+        return new String(token, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer, for the log reader.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return (buffer.hasRemaining() ? buffer.get() & 0xff : -1);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.AtomicHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.HdrHistogram.PackedConcurrentHistogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.ShortCountsHistogram;
+
+import picocli.CommandLine.ITypeConverter;
+
+/**
+ * The HdrHistogram implementations that values can be recorded into, which
+ * differ in how much memory their counts take.
+ * <p>
+ * Each implementation creates histograms with a number of significant digits,
+ * and either a fixed range of values, which still grows if a larger value is
+ * recorded, or no range at all, which grows to fit the values. The counts array
+ * of a fixed width implementation has an entry for every bucket from 0 to the
+ * highest value, of 2 (short), 4 (int) or 8 (long and atomic) bytes each; the
+ * packed implementations only store the non-zero counts, in as few bytes as
+ * each one needs.
+ */
+public enum HistogramImpl {
+    /**
+     * IntCountsHistogram, whose counts can't go past Integer.MAX_VALUE.
+     */
+    INT("int", IntCountsHistogram.class, Integer.MAX_VALUE,
+            buffer -> IntCountsHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> IntCountsHistogram.decodeFromCompressedByteBuffer(buffer, 0)) {
+        @Override
+        AbstractHistogram create(long highest, int digits) {
+            return (highest == 0 ? new IntCountsHistogram(digits) : new IntCountsHistogram(highest, digits));
+        }
+    },
+    /**
+     * Histogram, with long counts.
+     */
+    LONG("long", Histogram.class, Long.MAX_VALUE, buffer -> Histogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> Histogram.decodeFromCompressedByteBuffer(buffer, 0)) {
+        @Override
+        AbstractHistogram create(long highest, int digits) {
+            return (highest == 0 ? new Histogram(digits) : new Histogram(highest, digits));
+        }
+    },
+    /**
+     * ShortCountsHistogram, whose counts can't go past Short.MAX_VALUE.
+     */
+    SHORT("short", ShortCountsHistogram.class, Short.MAX_VALUE,
+            buffer -> ShortCountsHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> ShortCountsHistogram.decodeFromCompressedByteBuffer(buffer, 0)) {
+        @Override
+        AbstractHistogram create(long highest, int digits) {
+            return (highest == 0 ? new ShortCountsHistogram(digits) : new ShortCountsHistogram(highest, digits));
+        }
+    },
+    /**
+     * PackedHistogram, whose memory grows with the number of non-zero counts.
+     */
+    PACKED("packed", PackedHistogram.class, Long.MAX_VALUE,
+            buffer -> PackedHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> PackedHistogram.decodeFromCompressedByteBuffer(buffer, 0)) {
+        @Override
+        AbstractHistogram create(long highest, int digits) {
+            return (highest == 0 ? new PackedHistogram(digits) : new PackedHistogram(highest, digits));
+        }
+    },
+    /**
+     * PackedConcurrentHistogram, a PackedHistogram that can be recorded into
+     * from many threads at once.
+     */
+    PACKED_CONCURRENT("packed-concurrent", PackedConcurrentHistogram.class, Long.MAX_VALUE,
+            buffer -> PackedConcurrentHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> PackedConcurrentHistogram.decodeFromCompressedByteBuffer(buffer, 0)) {
+        @Override
+        AbstractHistogram create(long highest, int digits) {
+            return (highest == 0 ? new PackedConcurrentHistogram(digits)
+                    : new PackedConcurrentHistogram(highest, digits));
+        }
+    },
+    /**
+     * AtomicHistogram, which can be recorded into from many threads at once,
+     * but can't grow, so it always needs a range, and a value above it is an
+     * error.
+     */
+    ATOMIC("atomic", AtomicHistogram.class, Long.MAX_VALUE,
+            buffer -> AtomicHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> AtomicHistogram.decodeFromCompressedByteBuffer(buffer, 0)) {
+        @Override
+        AbstractHistogram create(long highest, int digits) {
+            if (highest == 0) {
+                throw new IllegalArgumentException("atomic histograms need a range of values");
+            }
+            return new AtomicHistogram(highest, digits);
+        }
+    };
+
+    /**
+     * The number of standard deviations above each event's mean that the
+     * likely largest value allows for.
+     */
+    static final double LIKELY_DEVIATIONS = 6;
+
+    private final String label;
+    private final Class<? extends AbstractHistogram> type;
+    private final long maxCount;
+    private final Function<ByteBuffer, AbstractHistogram> decoder;
+    private final HistogramOperations.CompressedDecoder<AbstractHistogram> compressedDecoder;
+
+    HistogramImpl(String label, Class<? extends AbstractHistogram> type, long maxCount,
+            Function<ByteBuffer, AbstractHistogram> decoder,
+            HistogramOperations.CompressedDecoder<AbstractHistogram> compressedDecoder) {
+        this.label = label;
+        this.type = type;
+        this.maxCount = maxCount;
+        this.decoder = decoder;
+        this.compressedDecoder = compressedDecoder;
+    }
+
+    /**
+     * The most values that this implementation's counts can hold.
+     */
+    public long maxCount() {
+        return maxCount;
+    }
+
+    /**
+     * Creates a histogram.
+     *
+     * @param highest the highest value of the range, or 0 for a histogram that
+     *                grows to fit the values
+     */
+    abstract AbstractHistogram create(long highest, int digits);
+
+    /**
+     * The operations of this implementation's histograms. Histograms with a
+     * range still grow to fit larger values, except for atomic ones.
+     */
+    public HistogramOperations<AbstractHistogram> operations(long highest, int digits) {
+        return HistogramOperations.of(() -> {
+            AbstractHistogram histogram = create(highest, digits);
+            if (highest != 0 && this != ATOMIC) {
+                histogram.setAutoResize(true);
+            }
+            return histogram;
+        }, decoder, compressedDecoder);
+    }
+
+    /**
+     * The operations of DoubleHistograms with this implementation's counts.
+     */
+    public HistogramOperations<DoubleHistogram> doubleOperations(int digits) {
+        if (this == ATOMIC) {
+            throw new IllegalArgumentException("atomic histograms can't hold double values, since they can't shift "
+                    + "their values");
+        }
+        return HistogramOperations.ofDouble(() -> new DoubleHistogram(digits, type),
+                buffer -> DoubleHistogram.decodeFromByteBuffer(buffer, type, 0),
+                buffer -> DoubleHistogram.decodeFromCompressedByteBuffer(buffer, type, 0));
+    }
+
+    /**
+     * The implementation of the smallest estimated footprint for count values,
+     * in a range up to highest (or 0 for the smallest range): the smallest
+     * fixed width implementation whose counts can hold count values, or packed,
+     * if its counts would take less room.
+     */
+    public static HistogramImpl smallestFor(long count, long highest, int digits) {
+        HistogramImpl fixed = smallestFixedFor(count);
+        long buckets = buckets(highest, digits);
+        return (packedBytes(count, buckets) < buckets * fixed.countBytes() ? PACKED : fixed);
+    }
+
+    /**
+     * The smallest fixed width implementation whose counts can hold count
+     * values.
+     */
+    public static HistogramImpl smallestFixedFor(long count) {
+        if (count <= SHORT.maxCount) {
+            return SHORT;
+        }
+        return (count <= INT.maxCount ? INT : LONG);
+    }
+
+    private long countBytes() {
+        return (this == SHORT ? Short.BYTES : this == INT ? Integer.BYTES : Long.BYTES);
+    }
+
+    /**
+     * The estimated bytes of the counts of a packed histogram of count values
+     * spread over the buckets: as if every bucket held the average count, each
+     * taking the bytes it needs, and about half as much again for the index of
+     * the packed array.
+     */
+    static long packedBytes(long count, long buckets) {
+        long average = Math.max(1, count / buckets);
+        long bytes = (Long.SIZE - Long.numberOfLeadingZeros(average) + Byte.SIZE - 1) / Byte.SIZE;
+        return buckets * bytes * 3 / 2;
+    }
+
+    /**
+     * The number of counts of a histogram of a range up to highest, with
+     * digits significant digits, as HdrHistogram lays them out: a bucket for
+     * each power of 2 that the range needs, of half of the sub-buckets each,
+     * and the first bucket's lower half.
+     */
+    static long buckets(long highest, int digits) {
+        long subBuckets = Long.highestOneBit(2 * (long) Math.pow(10, digits) - 1) << 1;
+        long smallestUntrackable = subBuckets;
+        long buckets = 1;
+        while (smallestUntrackable <= highest && smallestUntrackable <= Long.MAX_VALUE / 2) {
+            smallestUntrackable <<= 1;
+            buckets++;
+        }
+        return (buckets + 1) * (subBuckets / 2);
+    }
+
+    /**
+     * The largest value the events are likely to add up to: the sum of each
+     * event's mean plus LIKELY_DEVIATIONS standard deviations, at least 2.
+     */
+    public static long likelyMax(List<EventProbability> eventProbabilities) {
+        return likelyMax(eventProbabilities, 1.0);
+    }
+
+    /**
+     * The likely largest value, multiplied by the scale that double values are
+     * converted to fixed-point longs with.
+     */
+    public static long likelyMax(List<EventProbability> eventProbabilities, double scale) {
+        double max = 0;
+        for (EventProbability eventProbability : eventProbabilities) {
+            max += Math.max(0, eventProbability.mean() + LIKELY_DEVIATIONS * eventProbability.deviation());
+        }
+        return Math.max(2, (long) Math.ceil(Math.min(max * scale, Long.MAX_VALUE / 2)));
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
+
+class HistogramImplConverter implements ITypeConverter<HistogramImpl> {
+    public HistogramImpl convert(String value) throws Exception {
+        for (HistogramImpl impl : HistogramImpl.values()) {
+            if (impl.toString().equalsIgnoreCase(value) || impl.name().equalsIgnoreCase(value)) {
+                return impl;
+            }
+        }
+        throw new Exception("Invalid histogram implementation, valid values are "
+                + Arrays.stream(HistogramImpl.values()).map(HistogramImpl::toString).collect(Collectors.joining(", ")));
+    }
+}
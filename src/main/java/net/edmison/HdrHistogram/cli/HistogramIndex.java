@@ -0,0 +1,318 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.DoubleHistogramIterationValue;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+/**
+ * The cumulative counts of the non-empty buckets of a histogram, for answering
+ * many percentile, rank and count queries with a binary search each, instead
+ * of the walk through all of the counts that each of the histogram's own
+ * getValueAtPercentile, getPercentileAtOrBelowValue and getCountBetweenValues
+ * calls takes.
+ * <p>
+ * Each bucket is held as the lowest and highest values it covers, and the
+ * total count up to and including it, so the answers are exactly the
+ * histogram's own. The buckets of a DoubleHistogram are held as the values of
+ * its integer histogram, and converted with its ratio, in the same way as the
+ * DoubleHistogram converts them.
+ * <p>
+ * An index can be saved to a file, along with the size and modification time
+ * of the histogram file it was built from, and loaded again, without decoding
+ * the histogram, for as long as that file is unchanged.
+ */
+public final class HistogramIndex {
+
+    private static final int MAGIC = 0x48494458;
+    private static final int VERSION = 1;
+
+    /*
+     * The magic, version, source size and modification time, double flag,
+     * ratio, total count and number of buckets, ahead of the buckets.
+     */
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + 1 + Double.BYTES + Long.BYTES
+            + Integer.BYTES;
+
+    private final boolean doubles;
+    private final double integerToDoubleRatio;
+    private final double doubleToIntegerRatio;
+    private final long totalCount;
+    private final long[] lowest;
+    private final long[] highest;
+    private final long[] cumulative;
+
+    private HistogramIndex(boolean doubles, double integerToDoubleRatio, long totalCount, long[] lowest,
+            long[] highest, long[] cumulative) {
+        this.doubles = doubles;
+        this.integerToDoubleRatio = integerToDoubleRatio;
+        this.doubleToIntegerRatio = 1.0 / integerToDoubleRatio;
+        this.totalCount = totalCount;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Indexes the non-empty buckets of an integer or double histogram.
+     */
+    public static HistogramIndex of(EncodableHistogram histogram) {
+        if (histogram instanceof DoubleHistogram) {
+            DoubleHistogram doubleHistogram = (DoubleHistogram) histogram;
+            // the integer histogram of a DoubleHistogram has a lowest discernible value of 1
+            Histogram equivalents = new Histogram(doubleHistogram.getNumberOfSignificantValueDigits());
+            Builder builder = new Builder();
+            for (DoubleHistogramIterationValue value : doubleHistogram.recordedValues()) {
+                HistogramIterationValue integerValue = value.getIntegerHistogramIterationValue();
+                builder.add(equivalents.lowestEquivalentValue(integerValue.getValueIteratedTo()),
+                        integerValue.getValueIteratedTo(), integerValue.getCountAtValueIteratedTo());
+            }
+            return builder.build(true, doubleHistogram.getIntegerToDoubleValueConversionRatio());
+        }
+        AbstractHistogram integerHistogram = (AbstractHistogram) histogram;
+        Builder builder = new Builder();
+        for (HistogramIterationValue value : integerHistogram.recordedValues()) {
+            builder.add(integerHistogram.lowestEquivalentValue(value.getValueIteratedTo()), value.getValueIteratedTo(),
+                    value.getCountAtValueIteratedTo());
+        }
+        return builder.build(false, 1.0);
+    }
+
+    private static final class Builder {
+        private long[] lowest = new long[64];
+        private long[] highest = new long[64];
+        private long[] cumulative = new long[64];
+        private int buckets = 0;
+        private long total = 0;
+
+        void add(long low, long high, long count) {
+            if (buckets == lowest.length) {
+                lowest = Arrays.copyOf(lowest, buckets * 2);
+                highest = Arrays.copyOf(highest, buckets * 2);
+                cumulative = Arrays.copyOf(cumulative, buckets * 2);
+            }
+            total += count;
+            lowest[buckets] = low;
+            highest[buckets] = high;
+            cumulative[buckets] = total;
+            buckets++;
+        }
+
+        HistogramIndex build(boolean doubles, double ratio) {
+            return new HistogramIndex(doubles, ratio, total, Arrays.copyOf(lowest, buckets),
+                    Arrays.copyOf(highest, buckets), Arrays.copyOf(cumulative, buckets));
+        }
+    }
+
+    /**
+     * Whether the values are those of a DoubleHistogram.
+     */
+    public boolean isDouble() {
+        return doubles;
+    }
+
+    /**
+     * The number of non-empty buckets.
+     */
+    public int buckets() {
+        return lowest.length;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * The value that stands for all of the values of the bucket, as
+     * HdrHistogram's medianEquivalentValue, for walking the buckets in order.
+     */
+    double medianEquivalentValue(int bucket) {
+        long value = lowest[bucket] + (highest[bucket] - lowest[bucket] + 1) / 2;
+        return (doubles ? value * integerToDoubleRatio : value);
+    }
+
+    /**
+     * The total count of the bucket and all of the buckets below it.
+     */
+    long cumulativeCount(int bucket) {
+        return cumulative[bucket];
+    }
+
+    /**
+     * The value at the percentile, as the histogram's getValueAtPercentile
+     * returns it.
+     */
+    public double getValueAtPercentile(double percentile) {
+        double requestedPercentile = Math.min(Math.max(Math.nextAfter(percentile, Double.NEGATIVE_INFINITY), 0),
+                100);
+        long countAtPercentile = Math.max((long) Math.ceil(requestedPercentile * totalCount / 100), 1);
+        int bucket = firstReaching(countAtPercentile);
+        if (bucket == cumulative.length) {
+            return 0;
+        }
+        long value = (percentile == 0.0 ? lowest[bucket] : highest[bucket]);
+        return (doubles ? value * integerToDoubleRatio : value);
+    }
+
+    /**
+     * The percentage of the values at or below the value, as the histogram's
+     * getPercentileAtOrBelowValue returns it.
+     */
+    public double getPercentileAtOrBelowValue(double value) {
+        if (totalCount == 0) {
+            return 100.0;
+        }
+        return (100.0 * countAtOrBelow(toInteger(value))) / totalCount;
+    }
+
+    /**
+     * The count of the values from the low value to the high value, including
+     * the whole of the buckets that the low and high values fall in, as the
+     * histogram's getCountBetweenValues returns it.
+     */
+    public long getCountBetweenValues(double lowValue, double highValue) {
+        long low = toInteger(lowValue);
+        int below = lastBelow(highest, low);
+        long count = countAtOrBelow(toInteger(highValue)) - (below < 0 ? 0 : cumulative[below]);
+        return Math.max(count, 0);
+    }
+
+    private long toInteger(double value) {
+        return (doubles ? (long) (value * doubleToIntegerRatio) : (long) value);
+    }
+
+    /**
+     * The count of the values in the buckets whose lowest value is at or below
+     * the value, which are the buckets up to and including the value's own.
+     */
+    private long countAtOrBelow(long value) {
+        int bucket = (value == Long.MAX_VALUE ? lowest.length - 1 : lastBelow(lowest, value + 1));
+        return (bucket < 0 ? 0 : cumulative[bucket]);
+    }
+
+    /**
+     * The last bucket whose bound is below the value, or -1 if there's none.
+     */
+    private static int lastBelow(long[] bounds, long value) {
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bounds[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * The first bucket whose cumulative count reaches the count, or the number
+     * of buckets if none does.
+     */
+    private int firstReaching(long count) {
+        int low = 0;
+        int high = cumulative.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < count) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Saves the index to the file, written to a temporary file and moved over
+     * any previous one, along with the size and modification time of the
+     * histogram file it was built from.
+     */
+    public void save(Path file, Path source) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(Files.size(source));
+                out.writeLong(Files.getLastModifiedTime(source).toMillis());
+                out.writeBoolean(doubles);
+                out.writeDouble(integerToDoubleRatio);
+                out.writeLong(totalCount);
+                out.writeInt(lowest.length);
+                for (int i = 0; i < lowest.length; i++) {
+                    out.writeLong(lowest[i]);
+                    out.writeLong(highest[i]);
+                    out.writeLong(cumulative[i]);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Loads an index saved by save, if it was built from the histogram file as
+     * it is now.
+     *
+     * @return the index, or null if the file doesn't exist, isn't an index, or
+     *         was built from a different version of the histogram file
+     */
+    public static HistogramIndex load(Path file, Path source) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        FileTime modified = Files.getLastModifiedTime(source);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != Files.size(source)
+                    || buffer.getLong() != modified.toMillis()) {
+                return null;
+            }
+            boolean doubles = buffer.get() != 0;
+            double ratio = buffer.getDouble();
+            long totalCount = buffer.getLong();
+            int buckets = buffer.getInt();
+            if (buckets < 0 || buffer.remaining() != (long) buckets * 3 * Long.BYTES) {
+                return null;
+            }
+            long[] lowest = new long[buckets];
+            long[] highest = new long[buckets];
+            long[] cumulative = new long[buckets];
+            for (int i = 0; i < buckets; i++) {
+                lowest[i] = buffer.getLong();
+                highest[i] = buffer.getLong();
+                cumulative[i] = buffer.getLong();
+            }
+            return new HistogramIndex(doubles, ratio, totalCount, lowest, highest, cumulative);
+        } catch (BufferUnderflowException cause) {
+            return null;
+        }
+    }
+}
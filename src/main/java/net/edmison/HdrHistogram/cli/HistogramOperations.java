@@ -0,0 +1,247 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.ConcurrentDoubleHistogram;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+
+/**
+ * The operations that are needed on a type of histogram to record, encode,
+ * decode and merge it. HdrHistogram's histogram types share these operations,
+ * but not through a common interface, so this provides one.
+ */
+public interface HistogramOperations<H extends EncodableHistogram> {
+
+    /**
+     * IntCountsHistogram, with 3 significant digits.
+     */
+    HistogramOperations<IntCountsHistogram> INT = of(() -> new IntCountsHistogram(3),
+            buffer -> IntCountsHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> IntCountsHistogram.decodeFromCompressedByteBuffer(buffer, 0));
+
+    /**
+     * Histogram, with 3 significant digits.
+     */
+    HistogramOperations<Histogram> LONG = of(() -> new Histogram(3),
+            buffer -> Histogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> Histogram.decodeFromCompressedByteBuffer(buffer, 0));
+
+    /**
+     * DoubleHistogram, with 3 significant digits.
+     */
+    HistogramOperations<DoubleHistogram> DOUBLE = ofDouble(() -> new DoubleHistogram(3),
+            buffer -> DoubleHistogram.decodeFromByteBuffer(buffer, 0),
+            buffer -> DoubleHistogram.decodeFromCompressedByteBuffer(buffer, 0));
+
+    /**
+     * ConcurrentHistogram, with 3 significant digits, which can be recorded
+     * into from many threads at once.
+     */
+    HistogramOperations<ConcurrentHistogram> CONCURRENT_LONG = concurrentLong(3);
+
+    /**
+     * ConcurrentDoubleHistogram, with 3 significant digits, which can be
+     * recorded into from many threads at once.
+     */
+    HistogramOperations<ConcurrentDoubleHistogram> CONCURRENT_DOUBLE = concurrentDouble(3);
+
+    H create();
+
+    void recordValue(H histogram, long value);
+
+    void recordValue(H histogram, double value);
+
+    void reset(H histogram);
+
+    /**
+     * Encodes the histogram, uncompressed, into the buffer.
+     *
+     * @return the number of bytes encoded
+     */
+    int encode(H histogram, ByteBuffer buffer);
+
+    H decode(ByteBuffer buffer);
+
+    /**
+     * Encodes the histogram, compressed, into the buffer, as
+     * encodeIntoCompressedByteBuffer does.
+     *
+     * @return the number of bytes encoded
+     */
+    int encodeCompressed(H histogram, ByteBuffer buffer);
+
+    /**
+     * Decodes a histogram encoded by encodeIntoCompressedByteBuffer.
+     */
+    H decodeCompressed(ByteBuffer buffer) throws DataFormatException;
+
+    /**
+     * Adds the counts of the other histogram to the histogram.
+     */
+    void add(H histogram, H other);
+
+    /**
+     * The estimated memory footprint of the histogram, in bytes.
+     */
+    int footprint(H histogram);
+
+    /**
+     * The operations of ConcurrentHistograms with the number of significant
+     * digits.
+     */
+    static HistogramOperations<ConcurrentHistogram> concurrentLong(int digits) {
+        return of(() -> new ConcurrentHistogram(digits), buffer -> ConcurrentHistogram.decodeFromByteBuffer(buffer, 0),
+                buffer -> ConcurrentHistogram.decodeFromCompressedByteBuffer(buffer, 0));
+    }
+
+    /**
+     * The operations of ConcurrentDoubleHistograms with the number of
+     * significant digits.
+     */
+    static HistogramOperations<ConcurrentDoubleHistogram> concurrentDouble(int digits) {
+        return ofDouble(() -> new ConcurrentDoubleHistogram(digits),
+                buffer -> ConcurrentDoubleHistogram.decodeFromByteBuffer(buffer, 0),
+                buffer -> ConcurrentDoubleHistogram.decodeFromCompressedByteBuffer(buffer, 0));
+    }
+
+    /**
+     * Decodes a histogram that was encoded compressed.
+     */
+    @FunctionalInterface
+    interface CompressedDecoder<H> {
+        H decode(ByteBuffer buffer) throws DataFormatException;
+    }
+
+    /**
+     * Creates the operations for a type of integer valued histogram.
+     *
+     * @param factory           creates an empty histogram
+     * @param decoder           decodes a histogram that was encoded uncompressed
+     * @param compressedDecoder decodes a histogram that was encoded compressed
+     */
+    static <H extends AbstractHistogram> HistogramOperations<H> of(Supplier<H> factory,
+            Function<ByteBuffer, H> decoder, CompressedDecoder<H> compressedDecoder) {
+        return new HistogramOperations<>() {
+            @Override
+            public H create() {
+                return factory.get();
+            }
+
+            @Override
+            public void recordValue(H histogram, long value) {
+                histogram.recordValue(value);
+            }
+
+            @Override
+            public void recordValue(H histogram, double value) {
+                throw new UnsupportedOperationException("Double values can't be recorded in an integer histogram");
+            }
+
+            @Override
+            public void reset(H histogram) {
+                histogram.reset();
+            }
+
+            @Override
+            public int encode(H histogram, ByteBuffer buffer) {
+                return histogram.encodeIntoByteBuffer(buffer);
+            }
+
+            @Override
+            public H decode(ByteBuffer buffer) {
+                return decoder.apply(buffer);
+            }
+
+            @Override
+            public int encodeCompressed(H histogram, ByteBuffer buffer) {
+                return histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.DEFAULT_COMPRESSION);
+            }
+
+            @Override
+            public H decodeCompressed(ByteBuffer buffer) throws DataFormatException {
+                return compressedDecoder.decode(buffer);
+            }
+
+            @Override
+            public void add(H histogram, H other) {
+                histogram.add(other);
+            }
+
+            @Override
+            public int footprint(H histogram) {
+                return histogram.getEstimatedFootprintInBytes();
+            }
+        };
+    }
+
+    /**
+     * Creates the operations for a type of double valued histogram.
+     *
+     * @param factory           creates an empty histogram
+     * @param decoder           decodes a histogram that was encoded uncompressed
+     * @param compressedDecoder decodes a histogram that was encoded compressed
+     */
+    static <H extends DoubleHistogram> HistogramOperations<H> ofDouble(Supplier<H> factory,
+            Function<ByteBuffer, H> decoder, CompressedDecoder<H> compressedDecoder) {
+        return new HistogramOperations<>() {
+            @Override
+            public H create() {
+                return factory.get();
+            }
+
+            @Override
+            public void recordValue(H histogram, long value) {
+                histogram.recordValue(value);
+            }
+
+            @Override
+            public void recordValue(H histogram, double value) {
+                histogram.recordValue(value);
+            }
+
+            @Override
+            public void reset(H histogram) {
+                histogram.reset();
+            }
+
+            @Override
+            public int encode(H histogram, ByteBuffer buffer) {
+                return histogram.encodeIntoByteBuffer(buffer);
+            }
+
+            @Override
+            public H decode(ByteBuffer buffer) {
+                return decoder.apply(buffer);
+            }
+
+            @Override
+            public int encodeCompressed(H histogram, ByteBuffer buffer) {
+                return histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.DEFAULT_COMPRESSION);
+            }
+
+            @Override
+            public H decodeCompressed(ByteBuffer buffer) throws DataFormatException {
+                return compressedDecoder.decode(buffer);
+            }
+
+            @Override
+            public void add(H histogram, H other) {
+                histogram.add(other);
+            }
+
+            @Override
+            public int footprint(H histogram) {
+                return histogram.getEstimatedFootprintInBytes();
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Generates values with the events' probabilities inflated, so that rare
+ * events, and rare combinations of events, occur far more often, and weights
+ * each value by how much more likely it was drawn than it would have been.
+ * <p>
+ * Each event with a probability p below 1 occurs with the probability q =
+ * min(p * factor, MAX_PROBABILITY) instead, and each value's weight is the
+ * product of p / q for each event that occurred, and (1 - p) / (1 - q) for
+ * each that didn't. The weighted values have the same distribution as the
+ * values ProbabilitySupplier generates, but the tail holds many more of them,
+ * so tail percentiles converge with far fewer values.
+ */
+public class ImportanceSampler {
+
+    /**
+     * The most that an event's probability is inflated to.
+     */
+    static final double MAX_PROBABILITY = 0.5;
+
+    /**
+     * The unit of the weights recorded as counts, so that a weight of 1 is
+     * recorded as a count of 2^30 and the smallest weights are still counted.
+     */
+    static final long WEIGHT_SCALE = 1L << 30;
+
+    /**
+     * The percentiles whose tail probabilities are estimated.
+     */
+    static final double[] TAIL_PERCENTILES = { 99.0, 99.9, 99.99, 99.999, 99.9999 };
+
+    private final List<EventProbability> eventProbabilities;
+    private final double[] probabilities;
+    private final double[] occurredWeights;
+    private final double[] notOccurredWeights;
+    private final RandomGenerator random;
+    private double weight;
+
+    public ImportanceSampler(List<EventProbability> eventProbabilities, double factor, RandomGenerator random) {
+        if (!(factor >= 1)) {
+            throw new IllegalArgumentException("factor must be greater than or equal to 1");
+        }
+        this.eventProbabilities = eventProbabilities;
+        this.random = random;
+        int events = eventProbabilities.size();
+        probabilities = new double[events];
+        occurredWeights = new double[events];
+        notOccurredWeights = new double[events];
+        for (int i = 0; i < events; i++) {
+            double p = eventProbabilities.get(i).probability();
+            double q = inflate(p, factor);
+            probabilities[i] = q;
+            occurredWeights[i] = (q == 0 ? 0 : p / q);
+            notOccurredWeights[i] = (q == 1 ? 0 : (1 - p) / (1 - q));
+        }
+    }
+
+    private static double inflate(double p, double factor) {
+        return (p >= 1.0 ? p : Math.max(p, Math.min(p * factor, MAX_PROBABILITY)));
+    }
+
+    /**
+     * The most values that can be sampled before the total of their counts
+     * overflows a long. Since the weights average 1, the weighted counts total
+     * about WEIGHT_SCALE per value, and the squared weights, which average the
+     * product of p^2 / q + (1 - p)^2 / (1 - q) for each event, more.
+     */
+    public static long maxCount(List<EventProbability> eventProbabilities, double factor) {
+        double meanSquaredWeight = 1.0;
+        for (EventProbability eventProbability : eventProbabilities) {
+            double p = eventProbability.probability();
+            double q = inflate(p, factor);
+            meanSquaredWeight *= (q == 0 ? 0 : p * p / q) + (q == 1 ? 0 : (1 - p) * (1 - p) / (1 - q));
+        }
+        return (long) (Long.MAX_VALUE / WEIGHT_SCALE / Math.max(meanSquaredWeight, 1.0));
+    }
+
+    /**
+     * Draws the next value, as ProbabilitySupplier.getAsLong() does, but with
+     * the inflated probabilities.
+     */
+    public long nextLong() {
+        long value;
+        do {
+            value = 0;
+            weight = 1.0;
+            for (int i = 0; i < probabilities.length; i++) {
+                if (random.nextDouble() <= probabilities[i]) {
+                    value += eventProbabilities.get(i).nextLongImpact(random);
+                    weight *= occurredWeights[i];
+                } else {
+                    weight *= notOccurredWeights[i];
+                }
+            }
+        } while (value <= 0);
+        return value;
+    }
+
+    /**
+     * The weight of the last value drawn.
+     */
+    public double weight() {
+        return weight;
+    }
+
+    /**
+     * The weighted values, and the estimates of their tail probabilities.
+     * <p>
+     * The values are recorded with their weights as counts, in units of
+     * 1/WEIGHT_SCALE, and with their squared weights into a second histogram,
+     * for the variance of the estimates. Since the weights' normalizing
+     * constant (for values of 0 being drawn again) isn't known, the estimates
+     * are self-normalized: each tail probability is the weight above a value
+     * over the total weight.
+     */
+    public static class Estimate {
+        final Histogram weighted = new Histogram(3);
+        final Histogram squared = new Histogram(3);
+        long samples = 0;
+        double weightSum = 0;
+        double squaredWeightSum = 0;
+
+        /**
+         * Draws count values from the sampler, and records them.
+         */
+        public void sample(ImportanceSampler sampler, long count) {
+            for (long i = 0; i < count; i++) {
+                long value = sampler.nextLong();
+                record(value, sampler.weight());
+            }
+        }
+
+        void record(long value, double weight) {
+            samples++;
+            weightSum += weight;
+            squaredWeightSum += weight * weight;
+            long count = Math.round(weight * WEIGHT_SCALE);
+            if (count > 0) {
+                weighted.recordValueWithCount(value, count);
+            }
+            long squaredCount = Math.round(weight * weight * WEIGHT_SCALE);
+            if (squaredCount > 0) {
+                squared.recordValueWithCount(value, squaredCount);
+            }
+        }
+
+        public Estimate combine(Estimate other) {
+            weighted.add(other.weighted);
+            squared.add(other.squared);
+            samples += other.samples;
+            weightSum += other.weightSum;
+            squaredWeightSum += other.squaredWeightSum;
+            return this;
+        }
+
+        public Histogram histogram() {
+            return weighted;
+        }
+
+        /**
+         * The number of unweighted values that would give estimates as precise,
+         * (sum of w)^2 / (sum of w^2).
+         */
+        public double effectiveSampleSize() {
+            return weightSum * weightSum / squaredWeightSum;
+        }
+
+        /**
+         * The estimated probability of a value above the value.
+         */
+        public double tailProbability(long value) {
+            return fractionAbove(weighted, value);
+        }
+
+        /**
+         * The standard error of the estimated probability of a value above the
+         * value: the square root of sum(w^2 (above - P)^2) / (sum w)^2, where
+         * above is 1 for the values above it and 0 for the others.
+         */
+        public double tailStandardError(long value) {
+            double probability = tailProbability(value);
+            double squaredAbove = fractionAbove(squared, value) * squaredWeightSum;
+            double variance = ((1 - 2 * probability) * squaredAbove + probability * probability * squaredWeightSum)
+                    / (weightSum * weightSum);
+            return Math.sqrt(Math.max(0, variance));
+        }
+
+        private static double fractionAbove(Histogram histogram, long value) {
+            long total = histogram.getTotalCount();
+            if (total == 0) {
+                return 0;
+            }
+            long atOrBelow = histogram.getCountBetweenValues(0, value);
+            return (double) (total - atOrBelow) / total;
+        }
+
+        /**
+         * Prints the value at each of the tail percentiles, and the estimate of
+         * the probability of a value above it, with its standard error.
+         */
+        public void printStatistics(PrintStream out, double factor) {
+            out.printf("Importance sampling: %d values with event probabilities inflated up to %sx, "
+                    + "effective sample size %.0f%n", samples, factor, effectiveSampleSize());
+            out.printf("Counts are weights, in units of 1/%d of a value%n", WEIGHT_SCALE);
+            out.printf("%12s %12s %16s %16s %10s%n", "Percentile", "Value", "P(above)", "StdError", "RelError");
+            for (double percentile : TAIL_PERCENTILES) {
+                long value = weighted.getValueAtPercentile(percentile);
+                double probability = tailProbability(value);
+                double error = tailStandardError(value);
+                out.printf("%12s %12d %16.6e %16.6e %9.2f%%%n", percentile, value, probability, error,
+                        (probability > 0 ? error / probability * 100 : 0.0));
+            }
+        }
+    }
+}
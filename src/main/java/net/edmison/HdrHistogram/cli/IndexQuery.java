@@ -0,0 +1,87 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.Objects;
+
+import picocli.CommandLine.ITypeConverter;
+
+/**
+ * A lookup in a histogram index: the value at a percentile (p:PERCENTILE),
+ * the percentile at or below a value (rank:VALUE), or the count of the values
+ * between two values (count:LOW:HIGH).
+ */
+public record IndexQuery(String text, Kind kind, double value, double highValue) {
+
+    public enum Kind {
+        PERCENTILE, RANK, COUNT
+    }
+
+    public IndexQuery {
+        Objects.requireNonNull(text);
+        Objects.requireNonNull(kind);
+        if (kind == Kind.PERCENTILE && !(value >= 0 && value <= 100)) {
+            throw new IllegalArgumentException("a percentile must be from 0 to 100");
+        }
+        if (!(value >= 0) || !(highValue >= 0)) {
+            throw new IllegalArgumentException("a value must be greater than or equal to 0");
+        }
+    }
+
+    /**
+     * The answer of the index, as the histogram prints it: the values of an
+     * integer histogram and counts as integers, and percentiles and the values
+     * of a double histogram in full.
+     */
+    public String answer(HistogramIndex index) {
+        switch (kind) {
+            case PERCENTILE:
+                double valueAtPercentile = index.getValueAtPercentile(value);
+                return (index.isDouble() ? Double.toString(valueAtPercentile)
+                        : Long.toString((long) valueAtPercentile));
+            case RANK:
+                return Double.toString(index.getPercentileAtOrBelowValue(value));
+            case COUNT:
+                return Long.toString(index.getCountBetweenValues(value, highValue));
+            default:
+                throw new RuntimeException("Unknown query: " + kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
+
+class IndexQueryConverter implements ITypeConverter<IndexQuery> {
+    public IndexQuery convert(String value) throws Exception {
+        String[] parts = value.strip().split(":");
+        try {
+            switch (parts[0].toLowerCase()) {
+                case "p":
+                    if (parts.length == 2) {
+                        return new IndexQuery(value.strip(), IndexQuery.Kind.PERCENTILE, Double.parseDouble(parts[1]),
+                                0);
+                    }
+                    break;
+                case "rank":
+                    if (parts.length == 2) {
+                        return new IndexQuery(value.strip(), IndexQuery.Kind.RANK, Double.parseDouble(parts[1]), 0);
+                    }
+                    break;
+                case "count":
+                    if (parts.length == 3) {
+                        return new IndexQuery(value.strip(), IndexQuery.Kind.COUNT, Double.parseDouble(parts[1]),
+                                Double.parseDouble(parts[2]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException cause) {
+            throw new Exception("Invalid query value: " + value);
+        } catch (IllegalArgumentException cause) {
+            throw new Exception("Invalid query " + value + ": " + cause.getMessage());
+        }
+        throw new Exception("Invalid query format, expected p:PERCENTILE, rank:VALUE or count:LOW:HIGH");
+    }
+}
@@ -0,0 +1,60 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine.ITypeConverter;
+
+/**
+ * The length of each interval of an interval log: either a number of values,
+ * or a length of simulated time, in nanoseconds.
+ */
+public record Interval(long count, long nanos) {
+
+    public Interval {
+        if ((count > 0) == (nanos > 0) || count < 0 || nanos < 0) {
+            throw new IllegalArgumentException("An interval is either a positive count or a positive time");
+        }
+    }
+
+    public static Interval ofCount(long count) {
+        return new Interval(count, 0);
+    }
+
+    public static Interval ofTime(long duration, TimeUnit unit) {
+        return new Interval(0, unit.toNanos(duration));
+    }
+
+    public boolean isTime() {
+        return nanos > 0;
+    }
+}
+
+class IntervalConverter implements ITypeConverter<Interval> {
+    private static final Pattern INTERVAL = Pattern.compile("(\\d+)(ns|us|ms|s|m)?");
+
+    public Interval convert(String value) throws Exception {
+        Matcher matcher = INTERVAL.matcher(value);
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) < 1) {
+            throw new Exception("Invalid interval, expected a count of values, e.g. 1000000, "
+                    + "or a simulated time, e.g. 10s, 500ms");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        if (matcher.group(2) == null) {
+            return Interval.ofCount(amount);
+        }
+        switch (matcher.group(2)) {
+            case "ns":
+                return Interval.ofTime(amount, TimeUnit.NANOSECONDS);
+            case "us":
+                return Interval.ofTime(amount, TimeUnit.MICROSECONDS);
+            case "ms":
+                return Interval.ofTime(amount, TimeUnit.MILLISECONDS);
+            case "s":
+                return Interval.ofTime(amount, TimeUnit.SECONDS);
+            default:
+                return Interval.ofTime(amount, TimeUnit.MINUTES);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.SingleWriterDoubleRecorder;
+import org.HdrHistogram.SingleWriterRecorder;
+
+/**
+ * Records values into interval histograms, and writes each interval histogram
+ * to an HdrHistogram log, compressed, as it completes.
+ * <p>
+ * Values are recorded through a single writer recorder. At the end of each
+ * interval the recorder swaps in a recycled interval histogram, and the
+ * completed one is handed to a background thread that compresses and writes it
+ * to the log, adds it to the total of all of the values, and then hands it back
+ * for recycling. So the recording thread only pays for the swap.
+ * <p>
+ * Intervals are either a number of values, with wall clock time stamps, or a
+ * length of simulated time, in which each value advances the simulated time by
+ * its own length, as though each value was the latency of a request made as
+ * soon as the previous one completed. Each value falls into the interval in
+ * which it completes, and intervals without any values aren't logged.
+ */
+public abstract class IntervalLogger<H extends EncodableHistogram> implements AutoCloseable {
+
+    /*
+     * The most interval histograms that can be waiting to be written, before
+     * the recording thread waits for the writer.
+     */
+    private static final int MAX_PENDING = 4;
+
+    private final HistogramLogWriter logWriter;
+    private final Interval interval;
+    private final double nanosPerValueUnit;
+    private final long baseTime;
+    private final H total;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final BlockingQueue<H> recycled = new LinkedBlockingQueue<>();
+    private int pending = 0;
+    private volatile RuntimeException failure;
+
+    private long intervalCount = 0;
+    private double elapsedNanos = 0;
+    private double intervalStartNanos = 0;
+
+    /**
+     * Creates a logger for integer values, logged as Histograms with 3
+     * significant digits.
+     */
+    public static IntervalLogger<Histogram> ofLongs(PrintStream log, Interval interval, TimeUnit valueUnit) {
+        return new IntervalLogger<>(log, interval, valueUnit, new Histogram(3)) {
+            private final SingleWriterRecorder recorder = new SingleWriterRecorder(3);
+
+            @Override
+            void record(long value) {
+                recorder.recordValue(value);
+            }
+
+            @Override
+            void record(double value) {
+                throw new UnsupportedOperationException("Double values can't be recorded in an integer histogram");
+            }
+
+            @Override
+            Histogram swap(Histogram recycle) {
+                return recorder.getIntervalHistogram(recycle);
+            }
+
+            @Override
+            void add(Histogram total, Histogram intervalHistogram) {
+                total.add(intervalHistogram);
+            }
+        };
+    }
+
+    /**
+     * Creates a logger for double values, logged as DoubleHistograms with 4
+     * significant digits.
+     */
+    public static IntervalLogger<DoubleHistogram> ofDoubles(PrintStream log, Interval interval,
+            TimeUnit valueUnit) {
+        return new IntervalLogger<>(log, interval, valueUnit, new DoubleHistogram(4)) {
+            private final SingleWriterDoubleRecorder recorder = new SingleWriterDoubleRecorder(4);
+
+            @Override
+            void record(long value) {
+                recorder.recordValue(value);
+            }
+
+            @Override
+            void record(double value) {
+                recorder.recordValue(value);
+            }
+
+            @Override
+            DoubleHistogram swap(DoubleHistogram recycle) {
+                return recorder.getIntervalHistogram(recycle);
+            }
+
+            @Override
+            void add(DoubleHistogram total, DoubleHistogram intervalHistogram) {
+                total.add(intervalHistogram);
+            }
+        };
+    }
+
+    private IntervalLogger(PrintStream log, Interval interval, TimeUnit valueUnit, H total) {
+        this.logWriter = new HistogramLogWriter(log);
+        this.interval = interval;
+        this.nanosPerValueUnit = valueUnit.toNanos(1);
+        this.total = total;
+
+        logWriter.outputLogFormatVersion();
+        if (interval.isTime()) {
+            logWriter.outputComment("Time stamps are simulated time, with each value taking its own length in "
+                    + valueUnit.name().toLowerCase());
+            this.baseTime = 0;
+        } else {
+            this.baseTime = System.currentTimeMillis();
+        }
+        logWriter.outputStartTime(baseTime);
+        logWriter.setBaseTime(baseTime);
+        logWriter.outputLegend();
+    }
+
+    abstract void record(long value);
+
+    abstract void record(double value);
+
+    /**
+     * Swaps the recorder's interval histogram for the recycled one.
+     *
+     * @param recycle a histogram returned by a previous swap, or null
+     * @return the interval histogram
+     */
+    abstract H swap(H recycle);
+
+    abstract void add(H total, H intervalHistogram);
+
+    public void recordValue(long value) {
+        advance(value);
+        record(value);
+    }
+
+    public void recordValue(double value) {
+        advance(value);
+        record(value);
+    }
+
+    private void advance(double value) {
+        if (interval.isTime()) {
+            elapsedNanos += value * nanosPerValueUnit;
+            if (elapsedNanos >= intervalStartNanos + interval.nanos()) {
+                if (intervalCount > 0) {
+                    endInterval();
+                }
+                // skip over any intervals without values
+                intervalStartNanos += Math.floor((elapsedNanos - intervalStartNanos) / interval.nanos())
+                        * interval.nanos();
+            }
+        } else if (intervalCount == interval.count()) {
+            endInterval();
+        }
+        intervalCount++;
+    }
+
+    private void endInterval() {
+        H recycle = recycled.poll();
+        if (recycle == null && pending < MAX_PENDING) {
+            // the recorder creates a new histogram
+            pending++;
+        } else if (recycle == null) {
+            try {
+                recycle = recycled.take();
+            } catch (InterruptedException cause) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while writing the interval log", cause);
+            }
+        }
+        H intervalHistogram = swap(recycle);
+        if (interval.isTime()) {
+            intervalHistogram.setStartTimeStamp((long) (intervalStartNanos / 1_000_000));
+            intervalHistogram.setEndTimeStamp((long) ((intervalStartNanos + interval.nanos()) / 1_000_000));
+        }
+        writer.execute(() -> {
+            try {
+                // the log's max values are in milliseconds
+                logWriter.outputIntervalHistogram((intervalHistogram.getStartTimeStamp() - baseTime) / 1000.0,
+                        (intervalHistogram.getEndTimeStamp() - baseTime) / 1000.0, intervalHistogram,
+                        1_000_000 / nanosPerValueUnit);
+                add(total, intervalHistogram);
+            } catch (RuntimeException cause) {
+                failure = cause;
+            } finally {
+                recycled.add(intervalHistogram);
+            }
+        });
+        intervalCount = 0;
+    }
+
+    /**
+     * Logs the last interval, and waits for all of the intervals to be written.
+     *
+     * @return the total of all of the intervals
+     */
+    public H finish() {
+        if (intervalCount > 0) {
+            endInterval();
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing the interval log", cause);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        writer.shutdownNow();
+    }
+}
@@ -0,0 +1,123 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.function.Supplier;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+
+/**
+ * Simulates an open-loop load, in which requests arrive at a fixed rate
+ * whether or not the previous requests have completed, and records the values
+ * as the service times of the requests, in three ways.
+ * <p>
+ * The raw histogram records each service time as it is, as a closed-loop load
+ * generator that waits for each request to complete before sending the next
+ * one would: this is coordinated omission, since the requests that would have
+ * queued up behind a slow one are never sent. The corrected histogram records
+ * each service time with recordValueWithExpectedInterval, which back-fills the
+ * requests that a slow one would have delayed. The response histogram records
+ * the simulated response times of a single server that handles the requests in
+ * arrival order, each the service time plus the time spent queued behind the
+ * earlier requests.
+ */
+public abstract class OpenLoop<H extends EncodableHistogram> {
+
+    final H raw;
+    final H corrected;
+    final H response;
+
+    /*
+     * The time between arrivals, in the unit of the values.
+     */
+    final double interval;
+
+    private long arrivals = 0;
+    private double finish = 0;
+    private double busy = 0;
+
+    /**
+     * Creates a simulation that records integer values.
+     *
+     * @param factory  creates each of the histograms
+     * @param interval the time between arrivals, in the unit of the values, at
+     *                 least 1
+     */
+    public static <H extends AbstractHistogram> OpenLoop<H> ofLongs(Supplier<H> factory, double interval) {
+        long expectedInterval = Math.round(interval);
+        return new OpenLoop<>(factory.get(), factory.get(), factory.get(), interval) {
+            @Override
+            public void recordValue(long value) {
+                raw.recordValue(value);
+                corrected.recordValueWithExpectedInterval(value, expectedInterval);
+                response.recordValue(Math.round(respond(value)));
+            }
+
+            @Override
+            public void recordValue(double value) {
+                throw new UnsupportedOperationException("Double values can't be recorded in an integer histogram");
+            }
+        };
+    }
+
+    /**
+     * Creates a simulation that records double values.
+     *
+     * @param factory  creates each of the histograms
+     * @param interval the time between arrivals, in the unit of the values
+     */
+    public static OpenLoop<DoubleHistogram> ofDoubles(Supplier<DoubleHistogram> factory, double interval) {
+        return new OpenLoop<>(factory.get(), factory.get(), factory.get(), interval) {
+            @Override
+            public void recordValue(long value) {
+                recordValue((double) value);
+            }
+
+            @Override
+            public void recordValue(double value) {
+                raw.recordValue(value);
+                corrected.recordValueWithExpectedInterval(value, interval);
+                response.recordValue(respond(value));
+            }
+        };
+    }
+
+    private OpenLoop(H raw, H corrected, H response, double interval) {
+        if (!(interval > 0)) {
+            throw new IllegalArgumentException("interval must be greater than 0");
+        }
+        this.raw = raw;
+        this.corrected = corrected;
+        this.response = response;
+        this.interval = interval;
+    }
+
+    public abstract void recordValue(long value);
+
+    public abstract void recordValue(double value);
+
+    /**
+     * Simulates the next request, which arrives one interval after the previous
+     * one, and starts once both it has arrived and the previous one has
+     * completed.
+     *
+     * @param serviceTime the time it takes to handle the request
+     * @return the response time of the request, from its arrival to its
+     *         completion
+     */
+    double respond(double serviceTime) {
+        double arrival = arrivals++ * interval;
+        finish = Math.max(arrival, finish) + serviceTime;
+        busy += serviceTime;
+        return finish - arrival;
+    }
+
+    /**
+     * The fraction of the simulated time that the server was busy. Above 1 the
+     * arrival rate is more than the server can handle, and the queue, and so
+     * the response times, grow without limit.
+     */
+    public double utilization() {
+        return (arrivals == 0 ? 0 : busy / (arrivals * interval));
+    }
+}
@@ -0,0 +1,274 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterDoubleRecorder;
+import org.HdrHistogram.SingleWriterRecorder;
+
+/**
+ * Prints the percentiles of the values recorded so far, every period of wall
+ * clock time, while they're still being generated.
+ * <p>
+ * Each generating thread records into a channel of its own, a single writer
+ * recorder, so recording a value never takes a lock or waits for another
+ * thread. Every period, a background thread swaps each channel's interval
+ * histogram for the one it swapped out the period before, adds them all into
+ * the histogram of the period and into the total of all of the values, and
+ * prints a line with the percentiles of both. The recording threads only pay
+ * for the recorders' wait-free writer sections.
+ */
+public abstract class PercentileWatcher<H extends EncodableHistogram> implements AutoCloseable {
+
+    /**
+     * The percentiles printed for the period and for the total.
+     */
+    public static final double[] PERCENTILES = { 50, 99, 99.9, 99.99 };
+
+    /**
+     * A single thread's recorder.
+     */
+    public abstract static class Channel<H> {
+        private H recycle;
+
+        public abstract void recordValue(long value);
+
+        public abstract void recordValue(double value);
+
+        abstract H swap(H recycle);
+
+        /**
+         * Swaps in the histogram swapped out the period before, which the
+         * recorder requires to come from itself.
+         */
+        H swap() {
+            recycle = swap(recycle);
+            return recycle;
+        }
+    }
+
+    private final PrintStream out;
+    private final String valueFormat;
+    private final H period;
+    private final H total;
+    private final List<Channel<H>> channels = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "percentile-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long start = System.nanoTime();
+    private volatile RuntimeException failure;
+
+    /**
+     * Creates a watcher for integer values, recorded into Histograms with 3
+     * significant digits.
+     */
+    public static PercentileWatcher<Histogram> ofLongs(PrintStream out, long periodNanos) {
+        return new PercentileWatcher<>(out, periodNanos, "%9.0f", new Histogram(3), new Histogram(3)) {
+            @Override
+            public Channel<Histogram> newChannel() {
+                return register(new Channel<>() {
+                    private final SingleWriterRecorder recorder = new SingleWriterRecorder(3);
+
+                    @Override
+                    public void recordValue(long value) {
+                        recorder.recordValue(value);
+                    }
+
+                    @Override
+                    public void recordValue(double value) {
+                        throw new UnsupportedOperationException(
+                                "Double values can't be recorded in an integer histogram");
+                    }
+
+                    @Override
+                    Histogram swap(Histogram recycle) {
+                        return recorder.getIntervalHistogram(recycle);
+                    }
+                });
+            }
+
+            @Override
+            void add(Histogram histogram, Histogram other) {
+                histogram.add(other);
+            }
+
+            @Override
+            void reset(Histogram histogram) {
+                histogram.reset();
+            }
+
+            @Override
+            long totalCount(Histogram histogram) {
+                return histogram.getTotalCount();
+            }
+
+            @Override
+            double valueAtPercentile(Histogram histogram, double percentile) {
+                return histogram.getValueAtPercentile(percentile);
+            }
+        };
+    }
+
+    /**
+     * Creates a watcher for double values, recorded into DoubleHistograms with 4
+     * significant digits.
+     */
+    public static PercentileWatcher<DoubleHistogram> ofDoubles(PrintStream out, long periodNanos) {
+        return new PercentileWatcher<>(out, periodNanos, "%9.2f", new DoubleHistogram(4), new DoubleHistogram(4)) {
+            @Override
+            public Channel<DoubleHistogram> newChannel() {
+                return register(new Channel<>() {
+                    private final SingleWriterDoubleRecorder recorder = new SingleWriterDoubleRecorder(4);
+
+                    @Override
+                    public void recordValue(long value) {
+                        recorder.recordValue(value);
+                    }
+
+                    @Override
+                    public void recordValue(double value) {
+                        recorder.recordValue(value);
+                    }
+
+                    @Override
+                    DoubleHistogram swap(DoubleHistogram recycle) {
+                        return recorder.getIntervalHistogram(recycle);
+                    }
+                });
+            }
+
+            @Override
+            void add(DoubleHistogram histogram, DoubleHistogram other) {
+                histogram.add(other);
+            }
+
+            @Override
+            void reset(DoubleHistogram histogram) {
+                histogram.reset();
+            }
+
+            @Override
+            long totalCount(DoubleHistogram histogram) {
+                return histogram.getTotalCount();
+            }
+
+            @Override
+            double valueAtPercentile(DoubleHistogram histogram, double percentile) {
+                return histogram.getValueAtPercentile(percentile);
+            }
+        };
+    }
+
+    private PercentileWatcher(PrintStream out, long periodNanos, String valueFormat, H period, H total) {
+        if (periodNanos < 1) {
+            throw new IllegalArgumentException("periodNanos must be greater than or equal to 1");
+        }
+        this.out = out;
+        this.valueFormat = valueFormat;
+        this.period = period;
+        this.total = total;
+
+        StringBuilder header = new StringBuilder(String.format("%9s %12s", "Elapsed", "Count"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %9s", "p" + formatPercentile(percentile)));
+        }
+        header.append(String.format(" %9s |%12s", "Max", "Total"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %9s", "p" + formatPercentile(percentile)));
+        }
+        header.append(String.format(" %9s", "Max"));
+        out.println(header);
+        printer.scheduleAtFixedRate(() -> {
+            try {
+                report();
+            } catch (RuntimeException cause) {
+                failure = cause;
+                throw cause;
+            }
+        }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates the channel of a generating thread, which only that thread may
+     * record into.
+     */
+    public abstract Channel<H> newChannel();
+
+    abstract void add(H histogram, H other);
+
+    abstract void reset(H histogram);
+
+    abstract long totalCount(H histogram);
+
+    abstract double valueAtPercentile(H histogram, double percentile);
+
+    Channel<H> register(Channel<H> channel) {
+        channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * Swaps out every channel's interval histogram, and prints the percentiles
+     * of the period and of the total.
+     */
+    private synchronized void report() {
+        reset(period);
+        for (Channel<H> channel : channels) {
+            add(period, channel.swap());
+        }
+        add(total, period);
+
+        StringBuilder line = new StringBuilder(String.format("%8.1fs %12d", (System.nanoTime() - start) / 1e9,
+                totalCount(period)));
+        appendPercentiles(line, period);
+        line.append(String.format(" |%12d", totalCount(total)));
+        appendPercentiles(line, total);
+        out.println(line);
+        out.flush();
+    }
+
+    private void appendPercentiles(StringBuilder line, H histogram) {
+        for (double percentile : PERCENTILES) {
+            line.append(' ').append(String.format(valueFormat, valueAtPercentile(histogram, percentile)));
+        }
+        line.append(' ').append(String.format(valueFormat, histogram.getMaxValueAsDouble()));
+    }
+
+    private static String formatPercentile(double percentile) {
+        return (percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile));
+    }
+
+    /**
+     * Stops the periodic reports, and reports the rest of the values.
+     *
+     * @return the total of all of the values
+     */
+    public H finish() {
+        printer.shutdown();
+        try {
+            printer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while watching the percentiles", cause);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        report();
+        return total;
+    }
+
+    @Override
+    public void close() {
+        printer.shutdownNow();
+    }
+}
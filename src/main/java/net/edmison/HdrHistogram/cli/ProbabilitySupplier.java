@@ -2,22 +2,65 @@ package net.edmison.HdrHistogram.cli;
 
 import java.util.List;
 import java.util.Random;
+import java.util.function.DoubleConsumer;
 import java.util.function.DoubleSupplier;
+import java.util.function.IntConsumer;
 import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
 import java.util.function.LongSupplier;
+import java.util.random.RandomGenerator;
 
 public class ProbabilitySupplier implements IntSupplier, LongSupplier, DoubleSupplier {
 
-    private Random random = new Random();
-    private List<EventProbability> eventProbabilities;
+    /**
+     * The ways of deciding which events occur in each sample.
+     */
+    public enum Sampler {
+        /**
+         * Draws a random value for every event in every sample, to decide whether the
+         * event occurs.
+         */
+        BERNOULLI {
+            @Override
+            public ProbabilitySupplier create(List<EventProbability> eventProbabilities, RandomGenerator random) {
+                return new ProbabilitySupplier(eventProbabilities, random);
+            }
+        },
+        /**
+         * Draws the number of samples until each event next occurs, and counts down
+         * to it.
+         */
+        GEOMETRIC {
+            @Override
+            public ProbabilitySupplier create(List<EventProbability> eventProbabilities, RandomGenerator random) {
+                return new GeometricProbabilitySupplier(eventProbabilities, random);
+            }
+        };
+
+        public abstract ProbabilitySupplier create(List<EventProbability> eventProbabilities,
+                RandomGenerator random);
+    }
+
+    /**
+     * The number of values generated per block by the forEach methods.
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    final RandomGenerator random;
+    final List<EventProbability> eventProbabilities;
+    long retries = 0;
 
     public ProbabilitySupplier(List<EventProbability> eventProbabilities) {
-        this.eventProbabilities = eventProbabilities;
+        this(eventProbabilities, new Random());
     }
 
     public ProbabilitySupplier(List<EventProbability> eventProbabilities, long seed) {
-        this(eventProbabilities);
-        random.setSeed(seed);
+        this(eventProbabilities, new Random(seed));
+    }
+
+    public ProbabilitySupplier(List<EventProbability> eventProbabilities, RandomGenerator random) {
+        this.eventProbabilities = eventProbabilities;
+        this.random = random;
     }
 
     @Override
@@ -27,7 +70,7 @@ public class ProbabilitySupplier implements IntSupplier, LongSupplier, DoubleSup
             for (EventProbability eventProbability : eventProbabilities) {
                 value += eventProbability.nextInt(random);
             }
-        } while (value <= 0);
+        } while (value <= 0 && retry());
         return value;
     }
 
@@ -38,7 +81,7 @@ public class ProbabilitySupplier implements IntSupplier, LongSupplier, DoubleSup
             for (EventProbability eventProbability : eventProbabilities) {
                 value += eventProbability.nextLong(random);
             }
-        } while (value <= 0);
+        } while (value <= 0 && retry());
         return value;
     }
 
@@ -49,8 +92,92 @@ public class ProbabilitySupplier implements IntSupplier, LongSupplier, DoubleSup
             for (EventProbability eventProbability : eventProbabilities) {
                 value += eventProbability.nextDouble(random);
             }
-        } while (value <= 0.0);
+        } while (value <= 0.0 && retry());
         return value;
     }
 
+    /**
+     * Counts a value that wasn't positive, and so is drawn again. Only runs on
+     * the rare retry, never for a value that's positive the first time.
+     */
+    boolean retry() {
+        retries++;
+        return true;
+    }
+
+    /**
+     * The number of values that weren't positive, and so were drawn again.
+     */
+    public long retries() {
+        return retries;
+    }
+
+    /**
+     * Fills the first length entries of the block with values.
+     * <p>
+     * Every event of every value needs its own random draw, in the same order as
+     * getAsInt() draws them, so a block holds exactly the values that the same
+     * number of getAsInt() calls would return for the same seed.
+     *
+     * @param block  the block to fill
+     * @param length the number of values to fill the block with
+     */
+    public void fill(int[] block, int length) {
+        for (int i = 0; i < length; i++) {
+            block[i] = getAsInt();
+        }
+    }
+
+    public void fill(long[] block, int length) {
+        for (int i = 0; i < length; i++) {
+            block[i] = getAsLong();
+        }
+    }
+
+    public void fill(double[] block, int length) {
+        for (int i = 0; i < length; i++) {
+            block[i] = getAsDouble();
+        }
+    }
+
+    /**
+     * Generates count values, a block at a time, and passes each of them to the
+     * consumer.
+     *
+     * @param count    the number of values to generate
+     * @param consumer the consumer of the values
+     */
+    public void forEachInt(long count, IntConsumer consumer) {
+        int[] block = new int[(int) Math.min(BLOCK_SIZE, count)];
+        for (long remaining = count; remaining > 0; remaining -= block.length) {
+            int length = (int) Math.min(block.length, remaining);
+            fill(block, length);
+            for (int i = 0; i < length; i++) {
+                consumer.accept(block[i]);
+            }
+        }
+    }
+
+    public void forEachLong(long count, LongConsumer consumer) {
+        long[] block = new long[(int) Math.min(BLOCK_SIZE, count)];
+        for (long remaining = count; remaining > 0; remaining -= block.length) {
+            int length = (int) Math.min(block.length, remaining);
+            fill(block, length);
+            for (int i = 0; i < length; i++) {
+                consumer.accept(block[i]);
+            }
+        }
+    }
+
+    public void forEachDouble(long count, DoubleConsumer consumer) {
+        double[] block = new double[(int) Math.min(BLOCK_SIZE, count)];
+        for (long remaining = count; remaining > 0; remaining -= block.length) {
+            int length = (int) Math.min(block.length, remaining);
+            fill(block, length);
+            for (int i = 0; i < length; i++) {
+                consumer.accept(block[i]);
+            }
+        }
+    }
+
 }
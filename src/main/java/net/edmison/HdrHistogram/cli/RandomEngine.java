@@ -0,0 +1,200 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.ToDoubleFunction;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.JumpableGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * The random number generators that values can be generated with.
+ * <p>
+ * Each engine creates a single generator from a seed, for a single thread, and
+ * a set of independent generators from a seed, one for each chunk of a
+ * multi-threaded run. The same seed always creates the same generators.
+ * <p>
+ * The engine also decides how its generators draw Gaussian values, through
+ * their nextGaussian(): the java.util.random generators draw them with their
+ * own ziggurat, and random draws them from the ziggurat tables, instead of
+ * with the polar method of Random.nextGaussian(), which only legacy keeps.
+ */
+public enum RandomEngine {
+    /**
+     * java.util.Random, with its Gaussian values drawn from the ziggurat
+     * tables. Its chunk generators are split from a SplittableRandom.
+     */
+    RANDOM {
+        @Override
+        public RandomGenerator create(Long seed) {
+            return (seed == null ? new ZigguratRandom() : new ZigguratRandom(seed));
+        }
+
+        @Override
+        public RandomGenerator[] split(Long seed, int count) {
+            return SPLITMIX.split(seed, count);
+        }
+    },
+    /**
+     * java.util.Random, with its own Gaussian values, which reproduces the
+     * values of earlier versions for the same seed. Its chunk generators are
+     * split from a SplittableRandom, as before.
+     */
+    LEGACY {
+        @Override
+        public RandomGenerator create(Long seed) {
+            return (seed == null ? new Random() : new Random(seed));
+        }
+
+        @Override
+        public RandomGenerator[] split(Long seed, int count) {
+            return SPLITMIX.split(seed, count);
+        }
+    },
+    /**
+     * Xoroshiro128PlusPlus, a small and fast generator, whose chunk generators
+     * are jumped 2^64 values apart.
+     */
+    XOROSHIRO128PP {
+        @Override
+        public RandomGenerator create(Long seed) {
+            RandomGeneratorFactory<RandomGenerator> factory = RandomGeneratorFactory.of("Xoroshiro128PlusPlus");
+            return (seed == null ? factory.create() : factory.create(seed));
+        }
+
+        @Override
+        public RandomGenerator[] split(Long seed, int count) {
+            JumpableGenerator root = (JumpableGenerator) create(seed);
+            RandomGenerator[] generators = new RandomGenerator[count];
+            for (int i = 0; i < count; i++) {
+                generators[i] = root.copyAndJump();
+            }
+            return generators;
+        }
+    },
+    /**
+     * L64X128MixRandom, the LXM generator that java.util.random recommends by
+     * default, whose chunk generators are split from it.
+     */
+    L64X128MIX {
+        @Override
+        public RandomGenerator create(Long seed) {
+            RandomGeneratorFactory<RandomGenerator> factory = RandomGeneratorFactory.of("L64X128MixRandom");
+            return (seed == null ? factory.create() : factory.create(seed));
+        }
+
+        @Override
+        public RandomGenerator[] split(Long seed, int count) {
+            return splitFrom((SplittableGenerator) create(seed), count);
+        }
+    },
+    /**
+     * SplittableRandom, the SplitMix64 generator, whose chunk generators are
+     * split from it.
+     */
+    SPLITMIX {
+        @Override
+        public RandomGenerator create(Long seed) {
+            return (seed == null ? new SplittableRandom() : new SplittableRandom(seed));
+        }
+
+        @Override
+        public RandomGenerator[] split(Long seed, int count) {
+            return splitFrom((SplittableGenerator) create(seed), count);
+        }
+    };
+
+    /**
+     * Creates a generator for a single thread.
+     *
+     * @param seed the seed, or null for a random seed
+     */
+    public abstract RandomGenerator create(Long seed);
+
+    /**
+     * Creates independent generators, one for each chunk of a multi-threaded
+     * run.
+     *
+     * @param seed  the seed, or null for a random seed
+     * @param count the number of generators
+     */
+    public abstract RandomGenerator[] split(Long seed, int count);
+
+    /**
+     * How a generator created by an engine draws its Gaussian values, as a
+     * function of the generator that the uniform values are drawn from, so that
+     * a generator that wraps it can draw the same Gaussian values through its
+     * own methods. The function holds the state of the draws, so each wrapper
+     * needs its own.
+     */
+    static ToDoubleFunction<RandomGenerator> gaussianOf(RandomGenerator random) {
+        if (random instanceof ZigguratRandom) {
+            return Ziggurat::nextGaussian;
+        }
+        if (random instanceof Random) {
+            return new PolarGaussian();
+        }
+        // the default nextGaussian() of RandomGenerator, which only draws longs
+        return draws -> ((RandomGenerator) draws::nextLong).nextGaussian();
+    }
+
+    /**
+     * The polar method of Random.nextGaussian(), which draws two Gaussian
+     * values at a time, and keeps the second for the next draw.
+     */
+    private static final class PolarGaussian implements ToDoubleFunction<RandomGenerator> {
+        private boolean haveNext = false;
+        private double next;
+
+        @Override
+        public double applyAsDouble(RandomGenerator draws) {
+            if (haveNext) {
+                haveNext = false;
+                return next;
+            }
+            double v1;
+            double v2;
+            double s;
+            do {
+                v1 = 2 * draws.nextDouble() - 1;
+                v2 = 2 * draws.nextDouble() - 1;
+                s = v1 * v1 + v2 * v2;
+            } while (s >= 1 || s == 0);
+            double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+            next = v2 * multiplier;
+            haveNext = true;
+            return v1 * multiplier;
+        }
+    }
+
+    /**
+     * A java.util.Random that draws its Gaussian values from the ziggurat
+     * tables, from its own longs.
+     */
+    static final class ZigguratRandom extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        ZigguratRandom() {
+            super();
+        }
+
+        ZigguratRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public double nextGaussian() {
+            return Ziggurat.nextGaussian(this);
+        }
+    }
+
+    private static RandomGenerator[] splitFrom(SplittableGenerator root, int count) {
+        RandomGenerator[] generators = new RandomGenerator[count];
+        for (int i = 0; i < count; i++) {
+            generators[i] = root.split();
+        }
+        return generators;
+    }
+}
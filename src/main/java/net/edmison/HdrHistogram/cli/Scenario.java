@@ -0,0 +1,50 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine.ITypeConverter;
+
+/**
+ * A named set of event probabilities: the base latency, followed by any
+ * number of events, for comparing several sets side by side.
+ */
+public record Scenario(String name, List<EventProbability> eventProbabilities) {
+
+    /*
+     * Names become widget series names in URL parameters, so are kept to
+     * characters that don't need encoding.
+     */
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    public Scenario {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(eventProbabilities);
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("name must only hold letters, digits, '_' and '-'");
+        }
+        if (eventProbabilities.isEmpty()) {
+            throw new IllegalArgumentException("a scenario needs at least a base latency");
+        }
+        eventProbabilities = List.copyOf(eventProbabilities);
+    }
+}
+
+class ScenarioConverter implements ITypeConverter<Scenario> {
+    public Scenario convert(String value) throws Exception {
+        int equals = value.indexOf('=');
+        if (equals < 0) {
+            throw new Exception("Invalid scenario format, expected NAME=BASE[,EVENT...]");
+        }
+        String[] parts = value.substring(equals + 1).split(",");
+        List<EventProbability> eventProbabilities = new ArrayList<>();
+        eventProbabilities.add(new BaseEventProbabilityConverter().convert(parts[0]));
+        EventProbabilityConverter eventConverter = new EventProbabilityConverter();
+        for (int i = 1; i < parts.length; i++) {
+            eventProbabilities.add(eventConverter.convert(parts[i]));
+        }
+        return new Scenario(value.substring(0, equals), eventProbabilities);
+    }
+}
@@ -0,0 +1,203 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.EncodableHistogram;
+
+/**
+ * Verifies that merging histograms pairwise, in a fork-join tree across many
+ * threads, gives the same result as recording all of the values into a single
+ * histogram.
+ * <p>
+ * Values are recorded, possibly from many threads, into a concurrent reference
+ * histogram, and into per-thread batch histograms. Each full batch is encoded
+ * into its own buffer, as it would be to send it to an aggregator. Once all of
+ * the values are recorded, the batches are decoded and merged pairwise in a
+ * tree on a fork-join pool, and the root of the tree is compared with the
+ * reference histogram.
+ */
+public class TreeReduction<H extends EncodableHistogram, R extends EncodableHistogram> {
+
+    private final HistogramOperations<H> operations;
+    private final HistogramOperations<R> referenceOperations;
+    private final int batchSize;
+    private final R reference;
+
+    private long valueCount = 0;
+    int batchCount = 0;
+    long bytesEncoded = 0;
+    private long reduceNanos = 0;
+    private H result;
+
+    /**
+     * @param operations          the operations for the batch histograms
+     * @param referenceOperations the operations for the reference histogram,
+     *                            which must be safe to record into from many
+     *                            threads at once
+     * @param batchSize           the number of values in each batch
+     */
+    public TreeReduction(HistogramOperations<H> operations, HistogramOperations<R> referenceOperations,
+            int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be greater than or equal to 1");
+        }
+        this.operations = operations;
+        this.referenceOperations = referenceOperations;
+        this.batchSize = batchSize;
+        this.reference = referenceOperations.create();
+    }
+
+    /**
+     * Creates a producer of batches, for recording values from a single thread.
+     */
+    public Batches newBatches() {
+        return new Batches();
+    }
+
+    /**
+     * The encoded batches recorded by one thread.
+     */
+    public class Batches {
+        private final List<ByteBuffer> encoded = new ArrayList<>();
+        private final H batch = operations.create();
+        private ByteBuffer encodeBuffer = ByteBuffer.allocate(0);
+        private int count = 0;
+        private long valueCount = 0;
+
+        public void accrue(long value) {
+            referenceOperations.recordValue(reference, value);
+            operations.recordValue(batch, value);
+            accrued();
+        }
+
+        public void accrue(double value) {
+            referenceOperations.recordValue(reference, value);
+            operations.recordValue(batch, value);
+            accrued();
+        }
+
+        private void accrued() {
+            valueCount++;
+            if (++count == batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (count > 0) {
+                int needed = batch.getNeededByteBufferCapacity();
+                if (encodeBuffer.capacity() < needed) {
+                    encodeBuffer = ByteBuffer.allocate(needed);
+                }
+                encodeBuffer.clear();
+                int length = operations.encode(batch, encodeBuffer);
+                encodeBuffer.flip();
+                // copy out only the encoded bytes, since the encode buffer is reused
+                encoded.add(ByteBuffer.allocate(length).put(encodeBuffer).flip());
+                operations.reset(batch);
+                count = 0;
+            }
+        }
+
+        /**
+         * Appends the other thread's batches to these, keeping them in order.
+         *
+         * @param other the batches to append
+         * @return these batches
+         */
+        public Batches combine(Batches other) {
+            flush();
+            other.flush();
+            encoded.addAll(other.encoded);
+            valueCount += other.valueCount;
+            return this;
+        }
+    }
+
+    /**
+     * Decodes and merges all of the batches in a fork-join tree.
+     *
+     * @param batches the batches recorded by all of the threads
+     * @param threads the parallelism of the fork-join pool
+     * @return true if the merged histogram equals the reference histogram
+     */
+    public boolean reduce(Batches batches, int threads) {
+        batches.flush();
+        List<ByteBuffer> encoded = batches.encoded;
+        valueCount = batches.valueCount;
+        batchCount = encoded.size();
+        bytesEncoded = encoded.stream().mapToLong(ByteBuffer::remaining).sum();
+
+        FlightEvents.Merge event = new FlightEvents.Merge();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            event.begin();
+            long start = System.nanoTime();
+            result = encoded.isEmpty() ? operations.create() : pool.invoke(new Merge(encoded, 0, encoded.size()));
+            reduceNanos = System.nanoTime() - start;
+            event.end();
+        } finally {
+            pool.shutdown();
+        }
+        if (event.shouldCommit()) {
+            event.merges = batchCount;
+            event.bytesEncoded = bytesEncoded;
+            event.commit();
+        }
+        return reference.equals(result);
+    }
+
+    private class Merge extends RecursiveTask<H> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ByteBuffer> encoded;
+        private final int from;
+        private final int to;
+
+        Merge(List<ByteBuffer> encoded, int from, int to) {
+            this.encoded = encoded;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected H compute() {
+            if (to - from == 1) {
+                return operations.decode(encoded.get(from).duplicate());
+            }
+            int middle = (from + to) >>> 1;
+            Merge left = new Merge(encoded, from, middle);
+            left.fork();
+            H right = new Merge(encoded, middle, to).compute();
+            H merged = left.join();
+            operations.add(merged, right);
+            return merged;
+        }
+    }
+
+    /**
+     * Prints the number of batches, the bytes encoded, the throughput of the tree
+     * reduction, and the memory footprint of the histograms.
+     */
+    public void printStatistics(PrintStream out) {
+        out.printf("Values: %d, max value: %s%n", valueCount, reference.getMaxValueAsDouble());
+        out.printf("Batches: %d, bytes encoded: %d (%.1f bytes per batch)%n", batchCount, bytesEncoded,
+                batchCount == 0 ? 0.0 : (double) bytesEncoded / batchCount);
+        double seconds = reduceNanos / 1e9;
+        out.printf("Tree reduction took %d ms: %.0f batches per second, %.1f MB per second%n",
+                TimeUnit.NANOSECONDS.toMillis(reduceNanos), seconds == 0 ? 0.0 : batchCount / seconds,
+                seconds == 0 ? 0.0 : bytesEncoded / seconds / 1e6);
+        out.printf("Footprint: reference %s %d bytes", reference.getClass().getSimpleName(),
+                referenceOperations.footprint(reference));
+        if (result != null) {
+            out.printf(", merged %s %d bytes", result.getClass().getSimpleName(), operations.footprint(result));
+        }
+        out.println();
+    }
+}
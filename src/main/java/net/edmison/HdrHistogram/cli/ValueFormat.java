@@ -0,0 +1,51 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import picocli.CommandLine.ITypeConverter;
+
+/**
+ * The formats that values can be written in by the data command, and read back
+ * in from an input file.
+ */
+public enum ValueFormat {
+    /**
+     * One decimal value per line.
+     */
+    TEXT("text"),
+    /**
+     * Fixed width little-endian binary values: 4 bytes per int, and 8 bytes per
+     * long or double.
+     */
+    BINARY_LE("binary-le"),
+    /**
+     * Unsigned LEB128 variable length integers, 1 byte for values below 128 and
+     * up to 10 bytes for the largest values. Only int and long values are
+     * supported.
+     */
+    VARINT("varint");
+
+    private final String label;
+
+    ValueFormat(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
+
+class ValueFormatConverter implements ITypeConverter<ValueFormat> {
+    public ValueFormat convert(String value) throws Exception {
+        for (ValueFormat format : ValueFormat.values()) {
+            if (format.toString().equalsIgnoreCase(value) || format.name().equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new Exception("Invalid value format, valid values are "
+                + Arrays.stream(ValueFormat.values()).map(ValueFormat::toString).collect(Collectors.joining(", ")));
+    }
+}
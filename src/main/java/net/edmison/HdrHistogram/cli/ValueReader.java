@@ -0,0 +1,546 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads values in a ValueFormat, as written by a ValueWriter, through a large
+ * direct buffer, or straight from a buffer that holds all of the input, such as
+ * a memory-mapped file.
+ * <p>
+ * Text values are separated by whitespace, and are parsed straight from the
+ * bytes of the buffer, without creating a String for each value. Alternatively,
+ * text values can be read from a column of comma separated lines.
+ * <p>
+ * The values are read to be recorded, so a negative value, or a value that
+ * doesn't fit the type read, is invalid. An invalid value throws a
+ * NumberFormatException that names the input and the byte offset of the value
+ * in it.
+ */
+public class ValueReader implements AutoCloseable {
+
+    /*
+     * The longest text value that will be parsed, and so the most that has to
+     * be in the buffer to find the end of a text value.
+     */
+    static final int MAX_TEXT_LENGTH = 64;
+
+    /*
+     * The longest line that will be read when reading a column, and so the most
+     * that has to be in the buffer to find the end of a line.
+     */
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final ReadableByteChannel channel;
+    private final ValueFormat format;
+    private final int column;
+    private final ByteBuffer buffer;
+    private final boolean closeable;
+    private final String source;
+    // the offset in the input of the bytes that have been dropped from the buffer
+    private long offset;
+    private boolean endOfInput;
+    private int textStart;
+    private int textEnd;
+
+    public ValueReader(Path path, ValueFormat format) throws IOException {
+        this(path, format, 0);
+    }
+
+    /**
+     * @param column the column of comma separated text lines to read, counting
+     *               from 1, or 0 to read whitespace separated text values
+     */
+    public ValueReader(Path path, ValueFormat format, int column) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), format, column, true, path.toString());
+    }
+
+    public ValueReader(InputStream in, ValueFormat format) {
+        this(in, format, 0);
+    }
+
+    public ValueReader(InputStream in, ValueFormat format, int column) {
+        // leave the stream open, e.g. System.in
+        this(Channels.newChannel(in), format, column, false, "the input");
+    }
+
+    /**
+     * Reads the values straight from the remaining bytes of the buffer, without
+     * copying them.
+     */
+    public ValueReader(ByteBuffer buffer, ValueFormat format, int column) {
+        this(buffer, format, column, "the buffer", 0);
+    }
+
+    /**
+     * Reads the values straight from the remaining bytes of the buffer, which
+     * start at the offset of the source, e.g. a chunk of a file.
+     *
+     * @param source the name of the input, for the errors of invalid values
+     * @param offset the offset of the buffer's bytes in the input
+     */
+    public ValueReader(ByteBuffer buffer, ValueFormat format, int column, String source, long offset) {
+        this.channel = null;
+        this.format = format;
+        this.column = checkColumn(column, format);
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.closeable = false;
+        this.source = source;
+        this.offset = offset;
+        this.endOfInput = true;
+    }
+
+    private ValueReader(ReadableByteChannel channel, ValueFormat format, int column, boolean closeable,
+            String source) {
+        this.channel = channel;
+        this.format = format;
+        this.column = checkColumn(column, format);
+        this.buffer = ByteBuffer.allocateDirect(ValueWriter.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.closeable = closeable;
+        this.source = source;
+        this.offset = 0;
+        this.endOfInput = false;
+        buffer.flip();
+    }
+
+    private static int checkColumn(int column, ValueFormat format) {
+        if (column < 0 || (column > 0 && format != ValueFormat.TEXT)) {
+            throw new IllegalArgumentException("Only text values can be read from a column");
+        }
+        return column;
+    }
+
+    /**
+     * Skips the rest of the current line, e.g. a header line.
+     */
+    public void skipLine() {
+        while (true) {
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    return;
+                }
+            }
+            if (!refill(1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads all of the remaining values, and passes each of them to the consumer.
+     *
+     * @param consumer the consumer of the values
+     * @return the number of values read
+     */
+    public long forEachInt(IntConsumer consumer) {
+        long count = 0;
+        switch (format) {
+            case TEXT:
+                for (; nextText(); count++) {
+                    consumer.accept(checkInt(textLong(), textStart));
+                }
+                break;
+            case BINARY_LE:
+                for (; nextFixed(Integer.BYTES); count++) {
+                    int start = buffer.position();
+                    consumer.accept(checkInt(buffer.getInt(), start));
+                }
+                break;
+            case VARINT:
+                for (; nextVarint(); count++) {
+                    int start = buffer.position();
+                    consumer.accept(checkInt(getVarint(), start));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown value format: " + format);
+        }
+        return count;
+    }
+
+    public long forEachLong(LongConsumer consumer) {
+        long count = 0;
+        switch (format) {
+            case TEXT:
+                for (; nextText(); count++) {
+                    consumer.accept(checkLong(textLong(), textStart));
+                }
+                break;
+            case BINARY_LE:
+                for (; nextFixed(Long.BYTES); count++) {
+                    int start = buffer.position();
+                    consumer.accept(checkLong(buffer.getLong(), start));
+                }
+                break;
+            case VARINT:
+                for (; nextVarint(); count++) {
+                    int start = buffer.position();
+                    consumer.accept(checkLong(getVarint(), start));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown value format: " + format);
+        }
+        return count;
+    }
+
+    public long forEachDouble(DoubleConsumer consumer) {
+        long count = 0;
+        switch (format) {
+            case TEXT:
+                for (; nextText(); count++) {
+                    consumer.accept(checkDouble(textDouble(), textStart));
+                }
+                break;
+            case BINARY_LE:
+                for (; nextFixed(Double.BYTES); count++) {
+                    int start = buffer.position();
+                    consumer.accept(checkDouble(buffer.getDouble(), start));
+                }
+                break;
+            case VARINT:
+                throw new UnsupportedOperationException("The varint format does not support double values");
+            default:
+                throw new IllegalStateException("Unknown value format: " + format);
+        }
+        return count;
+    }
+
+    private long textLong() {
+        try {
+            return parseLong(buffer, textStart, textEnd);
+        } catch (NumberFormatException cause) {
+            throw invalid(cause.getMessage(), textStart);
+        }
+    }
+
+    private double textDouble() {
+        try {
+            return parseDouble(buffer, textStart, textEnd);
+        } catch (NumberFormatException cause) {
+            throw invalid("Invalid value: " + toString(buffer, textStart, textEnd), textStart);
+        }
+    }
+
+    private int checkInt(long value, int start) {
+        if (value > Integer.MAX_VALUE) {
+            throw invalid("Value is larger than an int: " + value, start);
+        }
+        return (int) checkLong(value, start);
+    }
+
+    private long checkLong(long value, int start) {
+        if (value < 0) {
+            throw invalid("Negative value: " + value, start);
+        }
+        return value;
+    }
+
+    private double checkDouble(double value, int start) {
+        if (!(value >= 0)) {
+            throw invalid((value < 0 ? "Negative value: " : "Invalid value: ") + value, start);
+        }
+        return value;
+    }
+
+    /**
+     * An invalid value, or line, at the position in the buffer.
+     */
+    private NumberFormatException invalid(String message, int position) {
+        return new NumberFormatException(message + " in " + source + " at byte offset " + (offset + position));
+    }
+
+    /**
+     * Finds the next text value, skipping any whitespace before it.
+     *
+     * @return false if there are no more values
+     */
+    private boolean nextText() {
+        if (column > 0) {
+            return nextField();
+        }
+        while (true) {
+            while (buffer.hasRemaining() && isWhitespace(buffer.get(buffer.position()))) {
+                buffer.position(buffer.position() + 1);
+            }
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            if (!refill(1)) {
+                return false;
+            }
+        }
+        refill(MAX_TEXT_LENGTH);
+        textStart = buffer.position();
+        textEnd = textStart;
+        while (textEnd < buffer.limit() && !isWhitespace(buffer.get(textEnd))) {
+            textEnd++;
+        }
+        if (textEnd == buffer.limit() && !endOfInput) {
+            throw invalid("Value is longer than " + MAX_TEXT_LENGTH + " characters", textStart);
+        }
+        buffer.position(textEnd);
+        return true;
+    }
+
+    /**
+     * Finds the value in the column of the next line, skipping any blank lines
+     * before it.
+     *
+     * @return false if there are no more lines
+     */
+    private boolean nextField() {
+        while (true) {
+            while (buffer.hasRemaining() && (buffer.get(buffer.position()) == '\n'
+                    || buffer.get(buffer.position()) == '\r')) {
+                buffer.position(buffer.position() + 1);
+            }
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            if (!refill(1)) {
+                return false;
+            }
+        }
+        refill(MAX_LINE_LENGTH);
+        int lineStart = buffer.position();
+        int lineEnd = lineStart;
+        while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        if (lineEnd == buffer.limit() && !endOfInput) {
+            throw invalid("Line is longer than " + MAX_LINE_LENGTH + " characters", lineStart);
+        }
+        int start = lineStart;
+        for (int field = 1; field < column; field++) {
+            while (start < lineEnd && buffer.get(start) != ',') {
+                start++;
+            }
+            if (start == lineEnd) {
+                throw invalid("Line has fewer than " + column + " columns: " + toString(buffer, lineStart, lineEnd),
+                        lineStart);
+            }
+            start++;
+        }
+        int end = start;
+        while (end < lineEnd && buffer.get(end) != ',') {
+            end++;
+        }
+        while (start < end && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        textStart = start;
+        textEnd = end;
+        buffer.position(lineEnd);
+        return true;
+    }
+
+    private boolean nextFixed(int width) {
+        if (!refill(width)) {
+            return false;
+        }
+        if (buffer.remaining() < width) {
+            throw invalid("Input ends part way through a value", buffer.position());
+        }
+        return true;
+    }
+
+    private boolean nextVarint() {
+        return refill(10);
+    }
+
+    private long getVarint() {
+        int start = buffer.position();
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw invalid("Input ends part way through a value", start);
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw invalid("Varint value is longer than 10 bytes", start);
+    }
+
+    /**
+     * Makes sure that at least the needed number of bytes are in the buffer,
+     * unless the end of the input is reached first.
+     *
+     * @return false if there are no bytes left in the buffer
+     */
+    private boolean refill(int needed) {
+        if (buffer.remaining() < needed && !endOfInput) {
+            offset += buffer.position();
+            buffer.compact();
+            try {
+                while (buffer.position() < needed) {
+                    if (channel.read(buffer) < 0) {
+                        endOfInput = true;
+                        break;
+                    }
+                }
+            } catch (IOException cause) {
+                throw new UncheckedIOException(cause);
+            } finally {
+                buffer.flip();
+            }
+        }
+        return buffer.hasRemaining();
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Parses a decimal long from bytes start (inclusive) to end (exclusive) of
+     * the buffer.
+     */
+    static long parseLong(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = (buffer.get(i) == '-');
+            i++;
+        }
+        if (i == end) {
+            throw numberFormatException(buffer, start, end);
+        }
+        long value = 0;
+        if (end - i <= 18) {
+            // 18 digits can't overflow a long
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw numberFormatException(buffer, start, end);
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+        try {
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw numberFormatException(buffer, start, end);
+                }
+                value = Math.addExact(Math.multiplyExact(value, 10), negative ? -digit : digit);
+            }
+        } catch (ArithmeticException cause) {
+            throw numberFormatException(buffer, start, end);
+        }
+        return value;
+    }
+
+    /**
+     * Parses a decimal double from bytes start (inclusive) to end (exclusive) of
+     * the buffer.
+     * <p>
+     * Values with at most 15 significant digits and a small enough exponent are
+     * exactly representable as a double multiplied or divided by an exactly
+     * representable power of ten, so a single correctly rounded operation gives
+     * the correctly rounded result. Anything else falls back to
+     * Double.parseDouble().
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = (buffer.get(i) == '-');
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa != 0 || b != '0') {
+                    significantDigits++;
+                }
+                mantissa = (significantDigits <= 18 ? mantissa * 10 + (b - '0') : mantissa);
+                exponent -= (point ? 1 : 0);
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E') && digits > 0) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = (buffer.get(i) == '-');
+                i++;
+            }
+            int explicitExponent = 0;
+            int exponentDigits = 0;
+            for (; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9' && exponentDigits < 6; i++) {
+                explicitExponent = explicitExponent * 10 + (buffer.get(i) - '0');
+                exponentDigits++;
+            }
+            exponent += (negativeExponent ? -explicitExponent : explicitExponent);
+            if (exponentDigits == 0) {
+                i = -1;
+            }
+        }
+        if (i == end && digits > 0 && significantDigits <= 15) {
+            double value = (double) mantissa;
+            if (exponent == 0 || mantissa == 0) {
+                return negative ? -value : value;
+            } else if (exponent > 0 && exponent < POWERS_OF_TEN.length) {
+                value *= POWERS_OF_TEN[exponent];
+                return negative ? -value : value;
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                value /= POWERS_OF_TEN[-exponent];
+                return negative ? -value : value;
+            }
+        }
+        return Double.parseDouble(toString(buffer, start, end));
+    }
+
+    private static NumberFormatException numberFormatException(ByteBuffer buffer, int start, int end) {
+        return new NumberFormatException("Invalid value: " + toString(buffer, start, end));
+    }
+
+    private static String toString(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeable) {
+            channel.close();
+        }
+    }
+}
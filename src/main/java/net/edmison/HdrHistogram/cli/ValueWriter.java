@@ -0,0 +1,165 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes values in a ValueFormat through a large direct buffer.
+ * <p>
+ * Values are encoded straight into the buffer, text values with hand-rolled
+ * decimal formatting for ints and longs, and the buffer is only written to the
+ * channel when it is full, or when the writer is closed.
+ */
+public class ValueWriter implements AutoCloseable {
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /*
+     * Space to leave for the longest encoded value: 20 digits and a sign for
+     * longs, 24 characters for doubles, plus the newline.
+     */
+    private static final int MAX_VALUE_LENGTH = 32;
+
+    private final WritableByteChannel channel;
+    private final ValueFormat format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final OutputStream flushable;
+
+    public ValueWriter(Path path, ValueFormat format) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        this.flushable = null;
+    }
+
+    public ValueWriter(OutputStream out, ValueFormat format) {
+        this.channel = Channels.newChannel(out);
+        this.format = format;
+        this.flushable = out;
+    }
+
+    public void writeInt(int value) {
+        ensureRemaining();
+        switch (format) {
+            case TEXT:
+                putDecimal(value);
+                buffer.put((byte) '\n');
+                break;
+            case BINARY_LE:
+                buffer.putInt(value);
+                break;
+            case VARINT:
+                putVarint(value & 0xFFFFFFFFL);
+                break;
+            default:
+                throw new IllegalStateException("Unknown value format: " + format);
+        }
+    }
+
+    public void writeLong(long value) {
+        ensureRemaining();
+        switch (format) {
+            case TEXT:
+                putDecimal(value);
+                buffer.put((byte) '\n');
+                break;
+            case BINARY_LE:
+                buffer.putLong(value);
+                break;
+            case VARINT:
+                putVarint(value);
+                break;
+            default:
+                throw new IllegalStateException("Unknown value format: " + format);
+        }
+    }
+
+    public void writeDouble(double value) {
+        ensureRemaining();
+        switch (format) {
+            case TEXT:
+                // the same representation as System.out.println(double)
+                String text = Double.toString(value);
+                for (int i = 0; i < text.length(); i++) {
+                    buffer.put((byte) text.charAt(i));
+                }
+                buffer.put((byte) '\n');
+                break;
+            case BINARY_LE:
+                buffer.putDouble(value);
+                break;
+            case VARINT:
+                throw new UnsupportedOperationException("The varint format does not support double values");
+            default:
+                throw new IllegalStateException("Unknown value format: " + format);
+        }
+    }
+
+    private void putDecimal(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                // -Long.MIN_VALUE overflows, so write the first digit on its own
+                buffer.put((byte) '9');
+                value = -(value + 9_000_000_000_000_000_000L);
+            } else {
+                value = -value;
+            }
+        }
+        int length = 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            length++;
+        }
+        int end = buffer.position() + length;
+        for (int position = end - 1; position >= end - length; position--) {
+            buffer.put(position, (byte) ('0' + (value % 10)));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void ensureRemaining() {
+        if (buffer.remaining() < MAX_VALUE_LENGTH) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        if (flushable != null) {
+            // leave the stream open, e.g. System.out, but push out what was written
+            flushable.flush();
+        } else {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.edmison.HdrHistogram.cli;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws standard normal values with Marsaglia and Tsang's ziggurat method.
+ * <p>
+ * The area under the normal density is covered by 128 layers of equal area,
+ * and a value is drawn by picking a layer, and a point across it, from a
+ * single random long. Almost every point falls inside the density, and is
+ * returned after a table lookup and a multiply; only the points in the ragged
+ * right hand edges of the layers, and in the tail beyond the bottom layer,
+ * need a logarithm or an exponential. The tables are computed once, and are
+ * only read afterwards, so they are shared by every thread.
+ *
+ * @see <a href="https://doi.org/10.18637/jss.v005.i08">The Ziggurat Method for
+ *      Generating Random Variables</a>
+ */
+final class Ziggurat {
+
+    private static final int LAYERS = 128;
+
+    /*
+     * The start of the tail, and the area of each layer, for 128 layers.
+     */
+    private static final double R = 3.442619855899;
+    private static final double V = 9.91256303526217e-3;
+
+    /*
+     * The points are 57 bit signed values, from the random long without the 7
+     * bits that pick the layer.
+     */
+    private static final double SCALE = 0x1p56;
+
+    // the largest point in each layer that is inside the density at any x
+    private static final long[] K = new long[LAYERS];
+    // the scale from a point to x, in each layer
+    private static final double[] W = new double[LAYERS];
+    // the density at the right hand edge of each layer
+    private static final double[] F = new double[LAYERS];
+
+    static {
+        double x = R;
+        double q = V / density(x);
+        K[0] = (long) (x / q * SCALE);
+        K[1] = 0;
+        W[0] = q / SCALE;
+        W[LAYERS - 1] = x / SCALE;
+        F[0] = 1.0;
+        F[LAYERS - 1] = density(x);
+        for (int i = LAYERS - 2; i >= 1; i--) {
+            double next = Math.sqrt(-2 * Math.log(V / x + density(x)));
+            K[i + 1] = (long) (next / x * SCALE);
+            x = next;
+            F[i] = density(x);
+            W[i] = x / SCALE;
+        }
+    }
+
+    private Ziggurat() {
+    }
+
+    /**
+     * Draws a value from the standard normal distribution.
+     */
+    static double nextGaussian(RandomGenerator random) {
+        long bits = random.nextLong();
+        int layer = (int) (bits & (LAYERS - 1));
+        long point = bits >> 7;
+        if (Math.abs(point) < K[layer]) {
+            return point * W[layer];
+        }
+        return nextGaussianEdge(random, point, layer);
+    }
+
+    private static double nextGaussianEdge(RandomGenerator random, long point, int layer) {
+        while (true) {
+            double x = point * W[layer];
+            if (layer == 0) {
+                // the tail beyond R, by Marsaglia's method
+                double tailX;
+                double tailY;
+                do {
+                    tailX = -Math.log(1.0 - random.nextDouble()) / R;
+                    tailY = -Math.log(1.0 - random.nextDouble());
+                } while (tailY + tailY < tailX * tailX);
+                return (point > 0 ? R + tailX : -R - tailX);
+            }
+            if (F[layer] + random.nextDouble() * (F[layer - 1] - F[layer]) < density(x)) {
+                return x;
+            }
+            long bits = random.nextLong();
+            layer = (int) (bits & (LAYERS - 1));
+            point = bits >> 7;
+            if (Math.abs(point) < K[layer]) {
+                return point * W[layer];
+            }
+        }
+    }
+
+    /**
+     * The unnormalized standard normal density.
+     */
+    private static double density(double x) {
+        return Math.exp(-0.5 * x * x);
+    }
+}
@@ -0,0 +1,80 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class BatchRunnerTest {
+
+    private static final String SCENARIOS = "# a sweep\n"
+            + "slow=50:15,0.01:200:50\n"
+            + "\n"
+            + "fast=50:15\n"
+            + "broken=50\n"
+            + "last=20:5\n";
+
+    private static String run(BatchRunner.Output output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BatchRunner runner = new BatchRunner(3, 42L, output, (scenario, seed) -> {
+            Histogram histogram = new Histogram(3);
+            new ChunkedGenerator(scenario.eventProbabilities(), seed, 1, ProbabilitySupplier.Sampler.BERNOULLI,
+                    RandomEngine.SPLITMIX).generate(scenario.name().equals("slow") ? 200_000 : 1_000,
+                            () -> histogram, (supplier, count, target) -> supplier.forEachLong(count,
+                                    target::recordValue),
+                            (first, second) -> first);
+            return histogram;
+        })) {
+            assertEquals(1, runner.run(new BufferedReader(new StringReader(SCENARIOS)), new PrintStream(out, true)));
+        }
+        return out.toString();
+    }
+
+    @Test
+    void testResultsInOrderOfTheLines() throws IOException {
+        String[] lines = run(BatchRunner.Output.SUMMARY).split("\\R");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("slow count=200000 p50="), lines[0]);
+        assertTrue(lines[1].startsWith("fast count=1000 p50="), lines[1]);
+        assertEquals("error: line 5: Invalid event probability format", lines[2]);
+        assertTrue(lines[3].startsWith("last count=1000 p50="), lines[3]);
+
+        // each scenario's seed only depends on the order of the lines
+        assertEquals(run(BatchRunner.Output.BLOB), run(BatchRunner.Output.BLOB));
+    }
+
+    @Test
+    void testWriterStopsWhenReadingFails() throws Exception {
+        Reader failing = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("connection reset");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (BatchRunner runner = new BatchRunner(1, 42L, BatchRunner.Output.SUMMARY,
+                (scenario, seed) -> new Histogram(3))) {
+            assertThrows(IOException.class,
+                    () -> runner.run(new BufferedReader(failing), new PrintStream(new ByteArrayOutputStream())));
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("batch-writer")) {
+                thread.join(10_000);
+                assertFalse(thread.isAlive(), "the batch writer is still waiting");
+            }
+        }
+    }
+}
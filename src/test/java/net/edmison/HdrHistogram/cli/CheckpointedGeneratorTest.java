@@ -0,0 +1,83 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointedGeneratorTest {
+
+    private static final List<EventProbability> EVENTS = List.of(new EventProbability(50d, 15d),
+            new EventProbability(0.01, 200d, 50d));
+
+    private static final PrintStream NO_PROGRESS = new PrintStream(OutputStream.nullOutputStream());
+
+    private static CheckpointedGenerator generator(Path checkpoint, String configuration) {
+        return new CheckpointedGenerator(EVENTS, 2, ProbabilitySupplier.Sampler.BERNOULLI, RandomEngine.SPLITMIX,
+                10_000, checkpoint, configuration, NO_PROGRESS);
+    }
+
+    private static Histogram generate(CheckpointedGenerator generator, ChunkedGenerator.ChunkTask<Histogram> task) {
+        return generator.generate(42L, 55_000, () -> new Histogram(3), task, (histogram, other) -> {
+            histogram.add(other);
+            return histogram;
+        }, CheckpointedGenerator.histogramState(HistogramOperations.LONG));
+    }
+
+    @Test
+    void testResumeMatchesUninterruptedRun(@TempDir Path directory) {
+        ChunkedGenerator.ChunkTask<Histogram> task = (supplier, count, histogram) -> supplier.forEachLong(count,
+                histogram::recordValue);
+        Histogram uninterrupted = generate(generator(directory.resolve("full"), "test"), task);
+        assertEquals(55_000, uninterrupted.getTotalCount());
+
+        // interrupt the run in its fourth segment, after three checkpoints
+        Path checkpoint = directory.resolve("interrupted");
+        int[] chunks = new int[1];
+        assertThrows(IllegalStateException.class, () -> generate(generator(checkpoint, "test"),
+                (supplier, count, histogram) -> {
+                    synchronized (chunks) {
+                        if (++chunks[0] > 6) {
+                            throw new IllegalStateException("interrupted");
+                        }
+                    }
+                    task.generate(supplier, count, histogram);
+                }));
+        Histogram resumed = generate(generator(checkpoint, "test"), task);
+        assertEquals(uninterrupted, resumed);
+    }
+
+    @Test
+    void testRejectsDifferentConfiguration(@TempDir Path directory) {
+        Path checkpoint = directory.resolve("checkpoint");
+        ChunkedGenerator.ChunkTask<Histogram> task = (supplier, count, histogram) -> supplier.forEachLong(count,
+                histogram::recordValue);
+        generate(generator(checkpoint, "one"), task);
+        assertThrows(IllegalArgumentException.class, () -> generate(generator(checkpoint, "other"), task));
+    }
+
+    @Test
+    void testHistogramIsCompressedEncoding(@TempDir Path directory) throws Exception {
+        Path checkpoint = directory.resolve("checkpoint");
+        Histogram histogram = generate(generator(checkpoint, "test"),
+                (supplier, count, chunk) -> supplier.forEachLong(count, chunk::recordValue));
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        }
+        byte[] encoded = Base64.getDecoder().decode(properties.getProperty("histogram"));
+        assertEquals(histogram, Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0));
+    }
+}
@@ -0,0 +1,54 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkedReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testChunksReadEveryValueInOrder() throws IOException {
+        Random random = new Random(42);
+        long[] values = random.longs(10_007, 0, 1L << 40).toArray();
+        for (ValueFormat format : ValueFormat.values()) {
+            Path path = tempDir.resolve("values." + format);
+            try (ValueWriter writer = new ValueWriter(path, format)) {
+                for (long value : values) {
+                    writer.writeLong(value);
+                }
+            }
+            for (int threads : new int[] { 1, 3, 16 }) {
+                assertArrayEquals(values, read(new ChunkedReader(path, format, Long.BYTES, 0, false, threads)),
+                        format + " with " + threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    void testColumnWithHeader() throws IOException {
+        Path path = tempDir.resolve("values.csv");
+        Files.writeString(path, "host, latency\nhost-a,12\r\n\nhost-b, \"7\"\nhost-c,123456\nhost-d,0");
+        for (int threads : new int[] { 1, 2, 5 }) {
+            assertArrayEquals(new long[] { 12, 7, 123456, 0 },
+                    read(new ChunkedReader(path, ValueFormat.TEXT, Long.BYTES, 2, true, threads)));
+        }
+    }
+
+    private static long[] read(ChunkedReader reader) {
+        return reader.read(LongStream::builder, (valueReader, builder) -> valueReader.forEachLong(builder::add),
+                (first, second) -> {
+                    second.build().forEach(first::add);
+                    return first;
+                }).build().toArray();
+    }
+}
@@ -0,0 +1,101 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class DistributedCompareTest {
+
+    @Test
+    void testMergesTheWorkersStreams() throws Exception {
+        Histogram expected = new Histogram(3);
+        DistributedCompare<Histogram> compare = DistributedCompare.ofLongs();
+        try (ServerSocket server = new ServerSocket(0, 3, InetAddress.getLoopbackAddress())) {
+            Thread[] workers = new Thread[3];
+            for (int shard = 0; shard < workers.length; shard++) {
+                int first = shard;
+                for (int value = first; value < 100_000; value += workers.length) {
+                    expected.recordValue(value % 5000 + 1);
+                }
+                workers[shard] = new Thread(() -> {
+                    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+                            DistributedCompare.Sender<Histogram> sender = new DistributedCompare.Sender<>(
+                                    HistogramOperations.LONG, 1000, socket, first)) {
+                        for (int value = first; value < 100_000; value += workers.length) {
+                            sender.accrue(value % 5000 + 1);
+                        }
+                    } catch (IOException cause) {
+                        throw new UncheckedIOException(cause);
+                    }
+                });
+                workers[shard].start();
+            }
+            compare.receive(server, workers.length, () -> false);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        assertEquals(expected, compare.merged());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compare.printStatistics(new PrintStream(out, true));
+        // 33,334 values in the first shard's batches of 1000, and 33,333 in the others'
+        assertEquals(34 + 34 + 34, Long.parseLong(out.toString().split("[:,]")[1].trim()));
+    }
+
+    @Test
+    void testReadTimeLeavesOutWaitingForTheWorkers() throws Exception {
+        DistributedCompare<Histogram> compare = DistributedCompare.ofLongs();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread worker = new Thread(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+                        DistributedCompare.Sender<Histogram> sender = new DistributedCompare.Sender<>(
+                                HistogramOperations.LONG, 10, socket, 0)) {
+                    Thread.sleep(1000);
+                    for (int value = 1; value <= 10; value++) {
+                        sender.accrue(value);
+                    }
+                } catch (IOException cause) {
+                    throw new UncheckedIOException(cause);
+                } catch (InterruptedException cause) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            worker.start();
+            compare.receive(server, 1, () -> false);
+            worker.join();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compare.printStatistics(new PrintStream(out, true));
+        String read = out.toString().lines().filter(line -> line.startsWith("Read and decoded in ")).findFirst()
+                .orElseThrow();
+        assertTrue(Long.parseLong(read.split(" ")[4]) < 1000, read);
+    }
+
+    @Test
+    void testRejectsCorruptFrames() throws Exception {
+        DistributedCompare<Histogram> compare = DistributedCompare.ofLongs();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(0);
+            out.writeInt(4);
+            out.writeInt(0x12345678);
+            out.writeInt(DistributedCompare.END);
+            out.flush();
+            assertThrows(IllegalStateException.class, () -> compare.receive(server, 1, () -> false));
+        }
+    }
+}
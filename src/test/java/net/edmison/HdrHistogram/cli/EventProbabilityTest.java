@@ -1,9 +1,11 @@
 package net.edmison.HdrHistogram.cli;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
 import java.util.Random;
 
 import org.junit.jupiter.api.Test;
@@ -67,4 +69,43 @@ class EventProbabilityTest {
 
         assertTrue(highAvg > lowAvg);
     }
+
+    @Test
+    void testNextGapMean() {
+        EventProbability ep = new EventProbability(0.01, false, 100d, 10d);
+        Random mockRandom = new Random(42);
+
+        long gapSum = 0;
+        int iterations = 100_000;
+        for (int i = 0; i < iterations; i++) {
+            gapSum += ep.nextGap(mockRandom);
+        }
+        double expected = (1.0 - 0.01) / 0.01;
+        assertEquals(expected, (double) gapSum / iterations, expected * 0.03);
+
+        assertEquals(0, new EventProbability(100d, 10d).nextGap(mockRandom));
+    }
+
+    @Test
+    void testGeometricSamplerMatchesBernoulli() {
+        List<EventProbability> events = List.of(new EventProbability(50d, 5d),
+                new EventProbability(0.01, 400d, 10d),
+                new EventProbability(0.001, 5000d, 10d));
+        ProbabilitySupplier bernoulli = ProbabilitySupplier.Sampler.BERNOULLI.create(events, new Random(42));
+        ProbabilitySupplier geometric = ProbabilitySupplier.Sampler.GEOMETRIC.create(events, new Random(42));
+
+        int iterations = 1_000_000;
+        long bernoulliOccurrences = 0, geometricOccurrences = 0;
+        long bernoulliRare = 0, geometricRare = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bernoulliValue = bernoulli.getAsLong();
+            long geometricValue = geometric.getAsLong();
+            bernoulliOccurrences += (bernoulliValue >= 300 ? 1 : 0);
+            geometricOccurrences += (geometricValue >= 300 ? 1 : 0);
+            bernoulliRare += (bernoulliValue >= 4000 ? 1 : 0);
+            geometricRare += (geometricValue >= 4000 ? 1 : 0);
+        }
+        assertEquals(bernoulliOccurrences, geometricOccurrences, bernoulliOccurrences * 0.05);
+        assertEquals(bernoulliRare, geometricRare, bernoulliRare * 0.15);
+    }
 }
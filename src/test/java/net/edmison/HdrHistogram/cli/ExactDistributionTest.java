@@ -0,0 +1,68 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class ExactDistributionTest {
+
+    @Test
+    void testUpperTail() {
+        assertEquals(0.5, ExactDistribution.upperTail(0), 1e-16);
+        assertEquals(0.15865525393145707, ExactDistribution.upperTail(1), 1e-15);
+        assertEquals(0.8413447460685429, ExactDistribution.upperTail(-1), 1e-15);
+        // the tail keeps its relative precision
+        assertEquals(1.3498980316301e-3, ExactDistribution.upperTail(3), 1e-15);
+        assertEquals(2.866515718791939e-7, ExactDistribution.upperTail(5), 1e-20);
+        assertEquals(7.619853024160527e-24, ExactDistribution.upperTail(10), 1e-35);
+    }
+
+    @Test
+    void testSingleEvent() {
+        EventProbability base = new EventProbability(10d, 2d);
+        ExactDistribution distribution = ExactDistribution.of(List.of(base));
+        double total = 0;
+        for (int value = 0; value <= distribution.maxValue(); value++) {
+            total += distribution.probability(value);
+        }
+        assertEquals(1.0, total, 1e-12);
+        // the flattened impact is at least the mean, so the values below it are
+        // never drawn, and 10 holds the impacts from 10 up to 11
+        assertEquals(0, distribution.probability(9));
+        assertEquals(2 * (0.5 - ExactDistribution.upperTail(0.5)), distribution.probability(10), 1e-15);
+    }
+
+    @Test
+    void testMatchesSampledValues() {
+        List<EventProbability> events = List.of(new EventProbability(50d, 15d),
+                new EventProbability(0.05, 200d, 50d), new EventProbability(0.01, 0.5, 30d));
+        Histogram exact = ExactDistribution.of(events).record(new Histogram(3), 1_000_000);
+        assertEquals(1_000_000, exact.getTotalCount());
+
+        Histogram sampled = new Histogram(3);
+        ProbabilitySupplier.Sampler.GEOMETRIC.create(events, new SplittableRandom(42))
+                .forEachLong(1_000_000, sampled::recordValue);
+        for (double percentile : new double[] { 10, 50, 90, 99, 99.9 }) {
+            double expected = exact.getValueAtPercentile(percentile);
+            assertEquals(expected, sampled.getValueAtPercentile(percentile), Math.max(1, expected * 0.02),
+                    "at " + percentile);
+        }
+        // the 95th percentile falls between the base values and the 0.05 event's, where the few values make
+        // its value swing with the seed, so the fraction of the values at or below it is compared instead
+        double gap = exact.getValueAtPercentile(95);
+        assertEquals(exact.getPercentileAtOrBelowValue((long) gap), sampled.getPercentileAtOrBelowValue((long) gap),
+                0.1, "at 95");
+        assertEquals(exact.getMean(), sampled.getMean(), exact.getMean() * 0.002);
+    }
+
+    @Test
+    void testTooManyValues() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ExactDistribution.of(List.of(new EventProbability(5e9, 1d))));
+    }
+}
@@ -0,0 +1,77 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class GenerationStatsTest {
+
+    private static final List<EventProbability> EVENTS = List.of(new EventProbability(0.5d, 0.3d),
+            new EventProbability(0.1, 3d, 1d));
+
+    @Test
+    void testCountingKeepsTheValues() {
+        for (ProbabilitySupplier.Sampler sampler : ProbabilitySupplier.Sampler.values()) {
+            for (RandomEngine engine : new RandomEngine[] { RandomEngine.LEGACY, RandomEngine.SPLITMIX }) {
+                long[] expected = new long[10_000];
+                sampler.create(EVENTS, engine.create(42L)).fill(expected, expected.length);
+
+                RandomGenerator random = engine.create(42L);
+                CountingRandomGenerator counting = new CountingRandomGenerator(random);
+                ProbabilitySupplier supplier = sampler.create(EVENTS, counting);
+                long[] counted = new long[expected.length];
+                supplier.fill(counted, counted.length);
+                assertArrayEquals(expected, counted, sampler + " " + engine);
+                assertTrue(counting.gaussianDraws >= expected.length, sampler + " " + engine);
+                // the base event's values are mostly below 1, so most of the values are retried
+                assertTrue(supplier.retries() > expected.length, sampler + " " + engine);
+                assertEquals(random instanceof Random, engine == RandomEngine.LEGACY);
+            }
+        }
+    }
+
+    @Test
+    void testGaussianDrawsAreCountedForEveryEngine() {
+        for (RandomEngine engine : RandomEngine.values()) {
+            RandomGenerator random = engine.create(42L);
+            CountingRandomGenerator counting = new CountingRandomGenerator(engine.create(42L));
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(random.nextGaussian(), counting.nextGaussian(), engine.name());
+            }
+            assertEquals(1000, counting.gaussianDraws, engine.name());
+            // every Gaussian value takes at least one uniform value, and the polar method two for every pair
+            assertTrue(counting.uniformDraws >= 1000, engine.name());
+        }
+    }
+
+    @Test
+    void testChunkedGeneratorCountsEveryChunk() {
+        ChunkedGenerator.ChunkTask<Histogram> task = (supplier, count, histogram) -> supplier.forEachLong(count,
+                histogram::recordValue);
+        GenerationStats stats = new GenerationStats();
+        Histogram counted = new ChunkedGenerator(EVENTS, 42L, 3, ProbabilitySupplier.Sampler.BERNOULLI,
+                RandomEngine.SPLITMIX, stats).generate(30_000, () -> new Histogram(3), task, (histogram, other) -> {
+                    histogram.add(other);
+                    return histogram;
+                });
+        Histogram uncounted = new ChunkedGenerator(EVENTS, 42L, 3, ProbabilitySupplier.Sampler.BERNOULLI,
+                RandomEngine.SPLITMIX).generate(30_000, () -> new Histogram(3), task, (histogram, other) -> {
+                    histogram.add(other);
+                    return histogram;
+                });
+        assertEquals(uncounted, counted);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stats.print(new PrintStream(out, true));
+        assertTrue(out.toString().startsWith("Generated 30000 values in 3 chunks"), out.toString());
+    }
+}
@@ -5,8 +5,17 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Random;
 
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.Histogram;
 import org.junit.jupiter.api.Test;
 
 public class HDRHistogramCLITest {
@@ -23,11 +32,11 @@ public class HDRHistogramCLITest {
                 new EventProbability(0.0001, 5000d, 100d),
                 new EventProbability(0.00001, 500000d, 100d)
         };
-        cli.count = 5_000_000;
+        cli.count = 5_000_000L;
 
         cli.validate();
 
-        LongHistogramCompare comparator = new LongHistogramCompare();
+        HistogramCompare<Histogram> comparator = new HistogramCompare<>(HistogramOperations.LONG);
         cli.processLong(comparator::accrue);
         assertTrue(comparator.compare());
     }
@@ -46,11 +55,11 @@ public class HDRHistogramCLITest {
                         new EventProbability(0.0001, 5000d, 100d),
                         new EventProbability(0.00001, 500000d, 100d)
                 };
-                cli.count = 5_000_000;
+                cli.count = 5_000_000L;
 
                 cli.validate();
 
-                LongHistogramCompare comparator = new LongHistogramCompare();
+                HistogramCompare<Histogram> comparator = new HistogramCompare<>(HistogramOperations.LONG);
                 cli.processLong(comparator::accrue);
                 assertTrue(comparator.compare());
             } catch (Throwable cause) {
@@ -69,11 +78,11 @@ public class HDRHistogramCLITest {
                 new EventProbability(0.0001, 5000d, 100d),
                 new EventProbability(0.00001, 500000d, 100d)
         };
-        cli.count = 5_000_000;
+        cli.count = 5_000_000L;
 
         cli.validate();
 
-        DoubleHistogramCompare comparator = new DoubleHistogramCompare();
+        HistogramCompare<DoubleHistogram> comparator = new HistogramCompare<>(HistogramOperations.DOUBLE);
         cli.processDouble(comparator::accrue);
         assertTrue(comparator.compare());
     }
@@ -93,11 +102,11 @@ public class HDRHistogramCLITest {
                         new EventProbability(0.0001, 5000d, 100d),
                         new EventProbability(0.00001, 500000d, 100d)
                 };
-                cli.count = 5_000_000;
+                cli.count = 5_000_000L;
 
                 cli.validate();
 
-                DoubleHistogramCompare comparator = new DoubleHistogramCompare();
+                HistogramCompare<DoubleHistogram> comparator = new HistogramCompare<>(HistogramOperations.DOUBLE);
                 cli.processDouble(comparator::accrue);
                 assertTrue(comparator.compare());
             } catch (Throwable cause) {
@@ -106,6 +115,187 @@ public class HDRHistogramCLITest {
         }
     }
 
+    @Test
+    public void parallelHistogramIsDeterministic() {
+        HdrHistogramCLI cli = new HdrHistogramCLI();
+        cli.seed = (long) 0xDEADBEEF;
+        cli.baseOption = new EventProbability(50d, 5d);
+        cli.eventsOption = new EventProbability[] { new EventProbability(0.01, 15d, 3d),
+                new EventProbability(0.001, 400d, 60d)
+        };
+        cli.count = 1_000_001L;
+        cli.threads = 4;
+
+        cli.validate();
+
+        Histogram first = cli.recordLong();
+        Histogram second = cli.recordLong();
+        assertEquals(cli.count.longValue(), first.getTotalCount());
+        assertEquals(first, second);
+
+        cli.threads = 3;
+        assertNotEquals(first, cli.recordLong());
+    }
+
+    @Test
+    public void scaledDoublesAreRecordedAsLongs() {
+        HdrHistogramCLI cli = new HdrHistogramCLI();
+        cli.seed = (long) 0xDEADBEEF;
+        cli.baseOption = new EventProbability(50d, 5d);
+        cli.eventsOption = new EventProbability[] { new EventProbability(0.01, 15d, 3d) };
+        cli.histType = HdrHistogramCLI.HistType.DOUBLE;
+        cli.scale = 1000.0;
+        cli.count = 100_000L;
+
+        cli.validate();
+
+        Histogram expected = new Histogram(3);
+        cli.processDouble(value -> expected.recordValue(Math.round(value * 1000)));
+        assertEquals(expected, cli.recordLong());
+
+        cli.threads = 3;
+        assertEquals(cli.count.longValue(), cli.recordLong().getTotalCount());
+    }
+
+    @Test
+    public void parallelLongValueTest() {
+        HdrHistogramCLI cli = new HdrHistogramCLI();
+        cli.seed = random.nextLong();
+        cli.baseOption = new EventProbability(50d, 5d);
+        cli.eventsOption = new EventProbability[] { new EventProbability(0.01, 15d, 3d),
+                new EventProbability(0.0001, 5000d, 100d)
+        };
+        cli.count = 1_000_000L;
+        cli.threads = 4;
+
+        cli.validate();
+
+        HistogramCompare<Histogram> comparator = cli.processLongChunks(
+                () -> new HistogramCompare<>(HistogramOperations.LONG), compare -> compare::accrue,
+                HistogramCompare::combine);
+        assertTrue(comparator.compare());
+    }
+
+    @Test
+    public void scenariosAreRecordedSeparately() throws Exception {
+        HdrHistogramCLI cli = new HdrHistogramCLI();
+        cli.seed = (long) 0xDEADBEEF;
+        cli.count = 100_000L;
+        cli.threads = 2;
+        cli.histType = HdrHistogramCLI.HistType.LONG;
+        ScenarioConverter converter = new ScenarioConverter();
+        // the large scenario's values are beyond the range of an int
+        List<Scenario> scenarios = List.of(converter.convert("small=50:5,0.01:200:50"),
+                converter.convert("large=5000000000:1000"));
+
+        cli.validateScenarios(scenarios);
+
+        List<AbstractHistogram> histograms = cli.recordScenarios(scenarios);
+        assertEquals(2, histograms.size());
+        assertEquals(cli.count.longValue(), histograms.get(0).getTotalCount());
+        assertTrue(histograms.get(0).getMaxValue() < 10_000);
+        assertTrue(histograms.get(1).getMinValue() > Integer.MAX_VALUE);
+        assertEquals(histograms, cli.recordScenarios(scenarios));
+
+        String[] args = { "-s", "1", "--scenario", "a=50:5", "--scenario", "a=60:5", "1000", "url" };
+        assertNotEquals(0, HdrHistogramCLI.execute(args));
+        args = new String[] { "-s", "1", "-b", "50:5", "--scenario", "a=50:5", "1000", "url" };
+        assertNotEquals(0, HdrHistogramCLI.execute(args));
+    }
+
+    @Test
+    public void treeReductionWithDigits() {
+        for (String type : new String[] { "long", "double" }) {
+            String[] args = { "-s", "1", "-b", "50:5", "-e", "0.01:200:50", "-t", type, "--digits", "2", "--threads",
+                    "2", "100000", "test", "--reduce", "tree" };
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PrintStream stdout = System.out;
+            System.setOut(new PrintStream(out, true));
+            try {
+                assertEquals(0, HdrHistogramCLI.execute(args));
+            } finally {
+                System.setOut(stdout);
+            }
+            assertTrue(out.toString().startsWith("Histograms are equal"), out.toString());
+        }
+    }
+
+    @Test
+    public void dataOutputIsReadByHist() throws IOException {
+        Path output = Files.createTempFile("values", ".bin");
+        try {
+            String[] args = { "-s", "42", "-b", "50:5", "-e", "0.01:200:50", "--format", "binary-le", "1000", "data",
+                    "--output", output.toString() };
+            assertEquals(0, HdrHistogramCLI.execute(args));
+            assertEquals(1000 * Long.BYTES, Files.size(output));
+
+            args = new String[] { "--input", output.toString(), "--format", "binary-le", "hist" };
+            assertEquals(0, HdrHistogramCLI.execute(args));
+
+            args = new String[] { "--input", output.toString(), "1000", "hist" };
+            assertNotEquals(0, HdrHistogramCLI.execute(args));
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void invalidInputValueIsAnError() throws IOException {
+        Path input = Files.createTempFile("values", ".txt");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(err, true));
+        try {
+            Files.writeString(input, "1\n2\n-5\n");
+            String[] args = { "--input", input.toString(), "hist" };
+            assertNotEquals(0, HdrHistogramCLI.execute(args));
+        } finally {
+            System.setErr(stderr);
+            Files.delete(input);
+        }
+        assertTrue(err.toString().startsWith("Negative value: -5 in " + input + " at byte offset 4"), err.toString());
+    }
+
+    @Test
+    public void exactIsAnOptionOfHistAndUrl() {
+        for (String command : new String[] { "hist", "url" }) {
+            String[] args = { "-b", "50:5", "-e", "0.01:200:50", "1000", command, "--exact" };
+            assertEquals(0, HdrHistogramCLI.execute(args));
+        }
+        String[] args = { "-b", "50:5", "-e", "0.01:200:50", "1000", "watch", "--exact" };
+        assertEquals(2, HdrHistogramCLI.execute(args));
+    }
+
+    @Test
+    public void rateIsAnOptionOfHistAndUrl() {
+        for (String command : new String[] { "hist", "url" }) {
+            String[] args = { "-s", "1", "-b", "50:5", "-e", "0.01:200:50", "1000", command, "--rate", "10" };
+            assertEquals(0, HdrHistogramCLI.execute(args));
+        }
+        String[] args = { "-b", "50:5", "-e", "0.01:200:50", "1000", "watch", "--rate", "10" };
+        assertEquals(2, HdrHistogramCLI.execute(args));
+    }
+
+    @Test
+    public void checkpointIsAnOptionOfHistAndTest() throws IOException {
+        Path directory = Files.createTempDirectory("checkpoints");
+        try {
+            for (String command : new String[] { "hist", "test" }) {
+                Path checkpoint = directory.resolve(command + ".checkpoint");
+                String[] args = { "-s", "1", "-b", "50:5", "-e", "0.01:200:50", "1000", command, "--checkpoint",
+                        checkpoint.toString(), "--checkpoint-every", "400" };
+                assertEquals(0, HdrHistogramCLI.execute(args));
+                assertTrue(Files.exists(checkpoint));
+                Files.delete(checkpoint);
+            }
+            String[] args = { "-b", "50:5", "-e", "0.01:200:50", "1000", "url", "--checkpoint",
+                    directory.resolve("url.checkpoint").toString() };
+            assertEquals(2, HdrHistogramCLI.execute(args));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
     @Test
     public void noArguments() {
         String[] args = {};
@@ -0,0 +1,42 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.junit.jupiter.api.Test;
+
+class HistogramCompareTest {
+
+    @Test
+    void testBatchesAreMerged() {
+        Random random = new Random(42);
+        HistogramCompare<IntCountsHistogram> comparator = new HistogramCompare<>(HistogramOperations.INT, 7);
+        for (int i = 0; i < 100; i++) {
+            comparator.accrue(random.nextInt(100_000));
+        }
+        assertTrue(comparator.compare());
+        // 14 full batches and the partial batch
+        assertEquals(15, comparator.mergeCount);
+        assertEquals(100, comparator.mergedHistogram.getTotalCount());
+        assertTrue(comparator.bytesEncoded > 0);
+    }
+
+    @Test
+    void testCombine() {
+        Random random = new Random(42);
+        HistogramCompare<DoubleHistogram> first = new HistogramCompare<>(HistogramOperations.DOUBLE, 10);
+        HistogramCompare<DoubleHistogram> second = new HistogramCompare<>(HistogramOperations.DOUBLE, 10);
+        for (int i = 0; i < 25; i++) {
+            first.accrue(random.nextDouble() * 1000);
+            second.accrue(random.nextDouble() * 10);
+        }
+        assertTrue(first.combine(second).compare());
+        assertEquals(50, first.valueCount);
+        // 3 batches each, and the second's merged histogram
+        assertEquals(7, first.mergeCount);
+    }
+}
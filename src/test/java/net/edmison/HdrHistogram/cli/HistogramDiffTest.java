@@ -0,0 +1,49 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class HistogramDiffTest {
+
+    private static Histogram histogram(long shift, long tail) {
+        Histogram histogram = new Histogram(3);
+        for (long value = 1; value <= 1000; value++) {
+            histogram.recordValueWithCount(value + shift, 10_000_000L);
+        }
+        histogram.recordValueWithCount(5000 + tail, 100_000_000L);
+        return histogram;
+    }
+
+    @Test
+    void testSameHistograms() {
+        HistogramDiff diff = HistogramDiff.of(HistogramIndex.of(histogram(0, 0)), HistogramIndex.of(histogram(0, 0)));
+        assertEquals(0, diff.ks());
+        assertEquals(0, diff.wasserstein());
+        assertTrue(diff.regressions(Map.of(99.9, 0.0), 0.0, 0.0).isEmpty());
+    }
+
+    @Test
+    void testShiftedHistogramsWithTenBillionValues() {
+        Histogram baseline = histogram(0, 0);
+        Histogram candidate = histogram(100, 1000);
+        assertEquals(10_100_000_000L, candidate.getTotalCount());
+        HistogramDiff diff = HistogramDiff.of(HistogramIndex.of(baseline), HistogramIndex.of(candidate));
+
+        // 100 values' worth of each 1000 have moved past the baseline's
+        assertEquals(100.0 / 1010, diff.ks(), 1e-3);
+        // all of the values moved by about 100, and the tail by 1000 more
+        assertEquals((1000 * 100 + 10 * 1000) / 1010.0, diff.wasserstein(), 2);
+        assertEquals((6000.0 - 5000) / 5000 * 100, diff.change(100), 0.1);
+
+        List<String> regressions = diff.regressions(Map.of(50.0, 50.0, 100.0, 10.0), 0.5, 200.0);
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0).startsWith("p100.0 increased by 19.9"), regressions.get(0));
+        assertEquals(3, diff.regressions(Map.of(50.0, 5.0, 100.0, 10.0), 0.05, 200.0).size());
+    }
+}
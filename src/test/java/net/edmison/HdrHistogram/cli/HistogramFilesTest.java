@@ -0,0 +1,141 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistogramFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testMergeEveryFormat() throws IOException {
+        Histogram expected = new Histogram(3);
+        List<Histogram> histograms = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Histogram histogram = randomHistogram();
+            expected.add(histogram);
+            histograms.add(histogram);
+        }
+
+        // binary, alternately compressed and not, one after another
+        Path binary = tempDir.resolve("dir").resolve("histograms.bin");
+        Files.createDirectories(binary.getParent());
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        for (int i = 0; i < 4; i++) {
+            if (i % 2 == 0) {
+                histograms.get(i).encodeIntoCompressedByteBuffer(buffer);
+            } else {
+                histograms.get(i).encodeIntoByteBuffer(buffer);
+            }
+        }
+        Files.write(binary, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        Path base64 = tempDir.resolve("histograms.txt");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 4; i < 8; i++) {
+            lines.append(toBase64(histograms.get(i))).append('\n');
+        }
+        Files.writeString(base64, lines);
+
+        Path log = tempDir.resolve("histograms.hlog");
+        try (PrintStream stream = new PrintStream(Files.newOutputStream(log))) {
+            HistogramLogWriter writer = new HistogramLogWriter(stream);
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            for (int i = 8; i < 12; i++) {
+                writer.outputIntervalHistogram(i, i + 1, histograms.get(i));
+            }
+        }
+
+        List<Path> files = HistogramFiles.expand(List.of(tempDir.resolve("dir"), base64, log));
+        assertEquals(List.of(binary, base64, log), files);
+        for (int threads : new int[] { 1, 3, 8 }) {
+            HistogramFiles.Merge merge = HistogramFiles.merge(files, threads);
+            assertEquals(3, merge.files());
+            assertEquals(12, merge.histograms());
+            assertEquals(expected, merge.histogram(), threads + " threads");
+        }
+    }
+
+    @Test
+    void testDoubleHistograms() throws IOException {
+        DoubleHistogram expected = new DoubleHistogram(3);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        for (int i = 0; i < 3; i++) {
+            DoubleHistogram histogram = new DoubleHistogram(3);
+            random.doubles(1000, 0.5, 5000).forEach(histogram::recordValue);
+            expected.add(histogram);
+            histogram.encodeIntoCompressedByteBuffer(buffer);
+        }
+        Path binary = tempDir.resolve("doubles.bin");
+        Files.write(binary, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        List<EncodableHistogram> read = new ArrayList<>();
+        HistogramFiles.forEach(binary, read::add);
+        assertEquals(3, read.size());
+        assertEquals(expected, HistogramFiles.merge(List.of(binary), 2).histogram());
+    }
+
+    @Test
+    void testSingleFileIsDecodedInParallel() throws IOException {
+        Histogram expected = new Histogram(3);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 24);
+        for (int i = 0; i < 2000; i++) {
+            Histogram histogram = randomHistogram();
+            expected.add(histogram);
+            histogram.encodeIntoCompressedByteBuffer(buffer);
+        }
+        Path binary = tempDir.resolve("many.bin");
+        Files.write(binary, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        HistogramFiles.Merge merge = HistogramFiles.merge(List.of(binary), 4);
+        assertEquals(2000, merge.histograms());
+        assertEquals(expected, merge.histogram());
+        assertTrue(merge.workers() > 1, merge.workers() + " workers");
+    }
+
+    @Test
+    void testTruncatedFile() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        randomHistogram().encodeIntoCompressedByteBuffer(buffer);
+        Path binary = tempDir.resolve("truncated.bin");
+        Files.write(binary, Arrays.copyOf(buffer.array(), buffer.position() - 1));
+        assertThrows(UncheckedIOException.class, () -> HistogramFiles.merge(List.of(binary), 1));
+    }
+
+    private Histogram randomHistogram() {
+        Histogram histogram = new Histogram(3);
+        random.longs(1000, 1, 1_000_000).forEach(histogram::recordValue);
+        return histogram;
+    }
+
+    private static String toBase64(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.DEFAULT_COMPRESSION);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+}
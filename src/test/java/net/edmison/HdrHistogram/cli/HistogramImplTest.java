@@ -0,0 +1,68 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.ShortCountsHistogram;
+import org.junit.jupiter.api.Test;
+
+class HistogramImplTest {
+
+    @Test
+    void testEveryImplRecordsAndDecodes() throws Exception {
+        for (HistogramImpl impl : HistogramImpl.values()) {
+            HistogramOperations<AbstractHistogram> operations = impl.operations(1000, 3);
+            AbstractHistogram histogram = operations.create();
+            for (long value = 1; value <= 1000; value++) {
+                operations.recordValue(histogram, value);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            operations.encode(histogram, buffer);
+            buffer.flip();
+            AbstractHistogram decoded = operations.decode(buffer);
+            assertEquals(histogram, decoded, impl.toString());
+            assertEquals(histogram.getClass(), decoded.getClass(), impl.toString());
+            assertEquals(impl, new HistogramImplConverter().convert(impl.toString()));
+
+            if (impl != HistogramImpl.ATOMIC) {
+                // the range still grows to fit larger values
+                operations.recordValue(histogram, 1_000_000);
+                assertEquals(1_000_000, histogram.getMaxValue(), 1_000);
+
+                HistogramOperations<DoubleHistogram> doubleOperations = impl.doubleOperations(2);
+                DoubleHistogram doubles = doubleOperations.create();
+                doubleOperations.recordValue(doubles, 0.25);
+                assertEquals(0.25, doubles.getMinValue(), 0.01);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> HistogramImpl.ATOMIC.operations(0, 3).create());
+    }
+
+    @Test
+    void testAutoSizing() {
+        assertEquals(HistogramImpl.SHORT, HistogramImpl.smallestFixedFor(Short.MAX_VALUE));
+        assertEquals(HistogramImpl.INT, HistogramImpl.smallestFixedFor(Short.MAX_VALUE + 1));
+        assertEquals(HistogramImpl.LONG, HistogramImpl.smallestFixedFor(Integer.MAX_VALUE + 1L));
+        // few values spread over the range are packed, many are denser in fixed width counts
+        assertEquals(HistogramImpl.PACKED, HistogramImpl.smallestFor(20_000, 2000, 3));
+        assertEquals(HistogramImpl.INT, HistogramImpl.smallestFor(1_000_000_000, 2000, 3));
+        assertEquals(HistogramImpl.PACKED, HistogramImpl.smallestFor(20_000, 0, 3));
+        for (int digits = 0; digits <= 5; digits++) {
+            for (long highest : new long[] { 2, 1000, 2000, 100_000, 1L << 40 }) {
+                // a long count takes 6 bytes more than a short one
+                assertEquals(new Histogram(highest, digits).getEstimatedFootprintInBytes()
+                        - new ShortCountsHistogram(highest, digits).getEstimatedFootprintInBytes(),
+                        6 * HistogramImpl.buckets(highest, digits), highest + " " + digits);
+            }
+        }
+        List<EventProbability> events = List.of(new EventProbability(50d, 15d),
+                new EventProbability(0.01, 200d, 50d));
+        assertEquals(50 + 90 + 200 + 300, HistogramImpl.likelyMax(events));
+    }
+}
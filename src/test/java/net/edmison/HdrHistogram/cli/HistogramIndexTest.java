@@ -0,0 +1,78 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistogramIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testAnswersMatchTheHistogram() {
+        Histogram histogram = new Histogram(10, 3_600_000_000L, 3);
+        DoubleHistogram doubleHistogram = new DoubleHistogram(3);
+        for (int i = 0; i < 100_000; i++) {
+            double value = Math.exp(random.nextGaussian() * 2 + 6);
+            histogram.recordValueWithCount((long) value + 10, 1 + random.nextInt(1000));
+            doubleHistogram.recordValue(value / 1000);
+        }
+        HistogramIndex index = HistogramIndex.of(histogram);
+        HistogramIndex doubleIndex = HistogramIndex.of(doubleHistogram);
+        assertEquals(histogram.getTotalCount(), index.getTotalCount());
+
+        for (double percentile : new double[] { 0, 1e-9, 25, 50, 90, 99, 99.9, 99.99, 99.999, 100 }) {
+            assertEquals(histogram.getValueAtPercentile(percentile), index.getValueAtPercentile(percentile));
+            assertEquals(doubleHistogram.getValueAtPercentile(percentile),
+                    doubleIndex.getValueAtPercentile(percentile));
+        }
+        for (int i = 0; i < 1000; i++) {
+            double percentile = random.nextDouble() * 100;
+            assertEquals(histogram.getValueAtPercentile(percentile), index.getValueAtPercentile(percentile));
+            assertEquals(doubleHistogram.getValueAtPercentile(percentile),
+                    doubleIndex.getValueAtPercentile(percentile));
+
+            long low = (long) Math.exp(random.nextDouble() * 14);
+            long high = low + (long) Math.exp(random.nextDouble() * 12);
+            assertEquals(histogram.getPercentileAtOrBelowValue(low), index.getPercentileAtOrBelowValue(low));
+            assertEquals(histogram.getCountBetweenValues(low, high), index.getCountBetweenValues(low, high));
+            assertEquals(doubleHistogram.getPercentileAtOrBelowValue(low / 1000.0),
+                    doubleIndex.getPercentileAtOrBelowValue(low / 1000.0));
+            assertEquals(doubleHistogram.getCountBetweenValues(low / 1000.0, high / 1000.0),
+                    doubleIndex.getCountBetweenValues(low / 1000.0, high / 1000.0));
+        }
+    }
+
+    @Test
+    void testCacheIsOnlyLoadedForTheSameFile() throws IOException {
+        Histogram histogram = new Histogram(3);
+        for (int i = 0; i < 10_000; i++) {
+            histogram.recordValue(1 + random.nextInt(100_000));
+        }
+        Path source = tempDir.resolve("histogram.txt");
+        Files.writeString(source, "histogram");
+        Path cached = tempDir.resolve("histogram.txt.idx");
+        HistogramIndex.of(histogram).save(cached, source);
+
+        HistogramIndex index = HistogramIndex.load(cached, source);
+        assertNotNull(index);
+        assertEquals(histogram.getValueAtPercentile(99.9), index.getValueAtPercentile(99.9));
+        assertEquals(histogram.getCountBetweenValues(100, 5000), index.getCountBetweenValues(100, 5000));
+
+        Files.writeString(source, "another histogram");
+        assertNull(HistogramIndex.load(cached, source));
+    }
+}
@@ -0,0 +1,62 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class ImportanceSamplerTest {
+
+    private static final List<EventProbability> EVENTS = List.of(new EventProbability(50d, 15d),
+            new EventProbability(0.009, 200d, 50d), new EventProbability(0.0005, 400d, 60d),
+            new EventProbability(0.00002, 2000d, 100d));
+
+    @Test
+    void testWeightsAverageOne() {
+        ImportanceSampler sampler = new ImportanceSampler(EVENTS, 100, new SplittableRandom(42));
+        double total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            sampler.nextLong();
+            total += sampler.weight();
+        }
+        assertEquals(1.0, total / 100_000, 0.02);
+    }
+
+    @Test
+    void testMaxCountKeepsTheSquaredWeightsInALong() {
+        assertEquals(Long.MAX_VALUE / ImportanceSampler.WEIGHT_SCALE, ImportanceSampler.maxCount(List.of(), 100));
+        long maxCount = ImportanceSampler.maxCount(EVENTS, 100);
+        assertTrue(maxCount < Long.MAX_VALUE / ImportanceSampler.WEIGHT_SCALE);
+
+        ImportanceSampler sampler = new ImportanceSampler(EVENTS, 100, new SplittableRandom(42));
+        double squaredTotal = 0;
+        for (int i = 0; i < 100_000; i++) {
+            sampler.nextLong();
+            squaredTotal += sampler.weight() * sampler.weight();
+        }
+        double meanSquaredWeight = (double) Long.MAX_VALUE / ImportanceSampler.WEIGHT_SCALE / maxCount;
+        assertEquals(meanSquaredWeight, squaredTotal / 100_000, meanSquaredWeight * 0.05);
+    }
+
+    @Test
+    void testMatchesExactTail() {
+        ExactDistribution exact = ExactDistribution.of(EVENTS);
+        ImportanceSampler.Estimate estimate = new ImportanceSampler.Estimate();
+        estimate.sample(new ImportanceSampler(EVENTS, 100, new SplittableRandom(42)), 200_000);
+        assertTrue(estimate.effectiveSampleSize() > 10_000);
+
+        // each tail probability is within a few standard errors of the exact one
+        for (long value : new long[] { 150, 450, 1000, 2000 }) {
+            double expected = 0;
+            for (long above = value + 1; above <= exact.maxValue(); above++) {
+                expected += exact.probability(above);
+            }
+            double error = estimate.tailStandardError(value);
+            assertTrue(error < expected * 0.1, "at " + value);
+            assertEquals(expected, estimate.tailProbability(value), 4 * error, "at " + value);
+        }
+    }
+}
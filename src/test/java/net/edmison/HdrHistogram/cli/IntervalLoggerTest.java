@@ -0,0 +1,74 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.jupiter.api.Test;
+
+class IntervalLoggerTest {
+
+    @Test
+    void testCountIntervals() {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Histogram total;
+        try (IntervalLogger<Histogram> logger = IntervalLogger.ofLongs(new PrintStream(log), Interval.ofCount(1000),
+                TimeUnit.MILLISECONDS)) {
+            for (int i = 0; i < 10_500; i++) {
+                logger.recordValue(i % 100 + 1);
+            }
+            total = logger.finish();
+        }
+        assertEquals(10_500, total.getTotalCount());
+
+        HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(log.toByteArray()));
+        Histogram merged = new Histogram(3);
+        for (int i = 0; i < 10; i++) {
+            Histogram interval = (Histogram) reader.nextIntervalHistogram();
+            assertEquals(1000, interval.getTotalCount());
+            merged.add(interval);
+        }
+        Histogram last = (Histogram) reader.nextIntervalHistogram();
+        assertEquals(500, last.getTotalCount());
+        merged.add(last);
+        assertNull(reader.nextIntervalHistogram());
+        assertEquals(total, merged);
+    }
+
+    @Test
+    void testSimulatedTimeIntervals() {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try (IntervalLogger<Histogram> logger = IntervalLogger.ofLongs(new PrintStream(log),
+                Interval.ofTime(10, TimeUnit.SECONDS), TimeUnit.MILLISECONDS)) {
+            // 15 values of 1 second, then one of 30 seconds, then 1 of 1 second
+            for (int i = 0; i < 15; i++) {
+                logger.recordValue(1000);
+            }
+            logger.recordValue(30_000);
+            logger.recordValue(1000);
+            logger.finish();
+        }
+
+        HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(log.toByteArray()));
+        // values complete at 1s to 9s
+        assertInterval(reader.nextIntervalHistogram(), 0, 9);
+        // 10s to 15s
+        assertInterval(reader.nextIntervalHistogram(), 10, 6);
+        // 45s, after two empty intervals, and 46s
+        assertInterval(reader.nextIntervalHistogram(), 40, 2);
+        assertNull(reader.nextIntervalHistogram());
+    }
+
+    private static void assertInterval(Object histogram, long startSeconds, long count) {
+        Histogram interval = (Histogram) histogram;
+        assertEquals(startSeconds * 1000, interval.getStartTimeStamp());
+        assertEquals((startSeconds + 10) * 1000, interval.getEndTimeStamp());
+        assertEquals(count, interval.getTotalCount());
+    }
+}
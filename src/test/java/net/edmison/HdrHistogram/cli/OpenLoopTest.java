@@ -0,0 +1,44 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class OpenLoopTest {
+
+    @Test
+    void testQueueing() {
+        OpenLoop<Histogram> loop = OpenLoop.ofLongs(() -> new Histogram(3), 10);
+        // arrivals at 0, 10, 20 and 30; the second request holds up the next two
+        for (long serviceTime : new long[] { 5, 25, 5, 5 }) {
+            loop.recordValue(serviceTime);
+        }
+
+        assertEquals(4, loop.raw.getTotalCount());
+        assertEquals(25, loop.raw.getMaxValue());
+
+        // 25 is back-filled with 15, the only missing value of at least the interval
+        assertEquals(5, loop.corrected.getTotalCount());
+        assertEquals(1, loop.corrected.getCountAtValue(15));
+
+        // completions at 5, 35, 40 and 45
+        assertEquals(4, loop.response.getTotalCount());
+        assertEquals(1, loop.response.getCountAtValue(5));
+        assertEquals(1, loop.response.getCountAtValue(25));
+        assertEquals(1, loop.response.getCountAtValue(20));
+        assertEquals(1, loop.response.getCountAtValue(15));
+        assertEquals(1.0, loop.utilization(), 1e-9);
+    }
+
+    @Test
+    void testNoQueueingBelowInterval() {
+        OpenLoop<DoubleHistogram> loop = OpenLoop.ofDoubles(() -> new DoubleHistogram(3), 2.5);
+        for (int i = 0; i < 1000; i++) {
+            loop.recordValue(1.0 + (i % 10) / 10.0);
+        }
+        assertEquals(loop.raw, loop.corrected);
+        assertEquals(loop.raw, loop.response);
+    }
+}
@@ -0,0 +1,61 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class PercentileWatcherTest {
+
+    @Test
+    void testThreadsRecordWhileReported() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Histogram expected = new Histogram(3);
+        for (int i = 0; i < 200_000; i++) {
+            expected.recordValue(i % 1000 + 1);
+        }
+        Histogram total;
+        try (PercentileWatcher<Histogram> watcher = PercentileWatcher.ofLongs(new PrintStream(out, true),
+                TimeUnit.MILLISECONDS.toNanos(1))) {
+            Thread[] threads = new Thread[2];
+            for (int t = 0; t < threads.length; t++) {
+                int first = t;
+                threads[t] = new Thread(() -> {
+                    PercentileWatcher.Channel<Histogram> channel = watcher.newChannel();
+                    for (int i = first; i < 200_000; i += threads.length) {
+                        channel.recordValue(i % 1000 + 1);
+                        if (i % 20_000 == first) {
+                            // let the watcher report while the values are recorded
+                            try {
+                                Thread.sleep(2);
+                            } catch (InterruptedException cause) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            total = watcher.finish();
+        }
+        assertEquals(expected, total);
+
+        String[] lines = out.toString().split("\\R");
+        assertTrue(lines[0].contains("p99.99"), lines[0]);
+        assertTrue(lines.length > 2, out.toString());
+        long reported = 0;
+        for (int i = 1; i < lines.length; i++) {
+            reported += Long.parseLong(lines[i].trim().split("\\s+")[1]);
+        }
+        assertEquals(200_000, reported);
+        assertTrue(lines[lines.length - 1].contains("|      200000"), lines[lines.length - 1]);
+    }
+}
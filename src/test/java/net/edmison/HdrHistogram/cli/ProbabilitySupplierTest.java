@@ -0,0 +1,60 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ProbabilitySupplierTest {
+
+    private final List<EventProbability> events = List.of(new EventProbability(50d, 5d),
+            new EventProbability(0.01, 400d, 10d),
+            new EventProbability(0.001, 5000d, 10d));
+
+    @Test
+    void testBernoulliFillMatchesScalarValues() {
+        ProbabilitySupplier scalar = ProbabilitySupplier.Sampler.BERNOULLI.create(events, new Random(42));
+        ProbabilitySupplier block = ProbabilitySupplier.Sampler.BERNOULLI.create(events, new Random(42));
+
+        long[] expected = new long[1000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = scalar.getAsLong();
+        }
+        long[] actual = new long[1000];
+        block.fill(actual, actual.length);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void testGeometricFillMatchesScalarDistribution() {
+        ProbabilitySupplier scalar = ProbabilitySupplier.Sampler.GEOMETRIC.create(events, new Random(42));
+        ProbabilitySupplier block = ProbabilitySupplier.Sampler.GEOMETRIC.create(events, new Random(43));
+
+        long scalarOccurrences = 0, blockOccurrences = 0;
+        long[] values = new long[ProbabilitySupplier.BLOCK_SIZE];
+        int blocks = 250;
+        for (int b = 0; b < blocks; b++) {
+            // partial blocks exercise occurrences that fall past the end of a block
+            int length = (b % 2 == 0 ? values.length : values.length / 3);
+            block.fill(values, length);
+            for (int i = 0; i < length; i++) {
+                assertTrue(values[i] >= 50);
+                blockOccurrences += (values[i] >= 300 ? 1 : 0);
+                scalarOccurrences += (scalar.getAsLong() >= 300 ? 1 : 0);
+            }
+        }
+        assertEquals(scalarOccurrences, blockOccurrences, scalarOccurrences * 0.05);
+    }
+
+    @Test
+    void testForEachCount() {
+        ProbabilitySupplier supplier = ProbabilitySupplier.Sampler.GEOMETRIC.create(events, new Random(42));
+        long[] count = new long[1];
+        supplier.forEachDouble(ProbabilitySupplier.BLOCK_SIZE * 2 + 7, value -> count[0]++);
+        assertEquals(ProbabilitySupplier.BLOCK_SIZE * 2 + 7, count[0]);
+    }
+}
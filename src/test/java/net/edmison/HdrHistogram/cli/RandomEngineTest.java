@@ -0,0 +1,54 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+import org.junit.jupiter.api.Test;
+
+class RandomEngineTest {
+
+    @Test
+    void testLegacyReproducesRandom() {
+        RandomGenerator legacy = RandomEngine.LEGACY.create(42L);
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(random.nextGaussian(), legacy.nextGaussian());
+        }
+    }
+
+    @Test
+    void testRandomDrawsGaussiansFromTheZiggurat() {
+        RandomGenerator zigguratRandom = RandomEngine.RANDOM.create(42L);
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Ziggurat.nextGaussian(random), zigguratRandom.nextGaussian());
+        }
+        assertTrue(zigguratRandom instanceof Random);
+    }
+
+    @Test
+    void testSeededEnginesAreReproducible() {
+        for (RandomEngine engine : RandomEngine.values()) {
+            assertArrayEquals(engine.create(42L).longs(100).toArray(), engine.create(42L).longs(100).toArray(),
+                    engine.name());
+
+            RandomGenerator[] first = engine.split(42L, 4);
+            RandomGenerator[] second = engine.split(42L, 4);
+            long[][] chunks = new long[4][];
+            for (int i = 0; i < 4; i++) {
+                chunks[i] = first[i].longs(100).toArray();
+                assertArrayEquals(chunks[i], second[i].longs(100).toArray(), engine.name());
+            }
+            // the chunks are independent streams
+            for (int i = 1; i < 4; i++) {
+                assertFalse(Arrays.equals(chunks[0], chunks[i]), engine.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.HdrHistogram.ConcurrentDoubleHistogram;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.DoubleHistogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.junit.jupiter.api.Test;
+
+class TreeReductionTest {
+
+    @Test
+    void testLongTreeReduction() {
+        Random random = new Random(42);
+        TreeReduction<IntCountsHistogram, ConcurrentHistogram> reduction = new TreeReduction<>(
+                HistogramOperations.INT, HistogramOperations.CONCURRENT_LONG, 100);
+        TreeReduction<IntCountsHistogram, ConcurrentHistogram>.Batches first = reduction.newBatches();
+        TreeReduction<IntCountsHistogram, ConcurrentHistogram>.Batches second = reduction.newBatches();
+        for (int i = 0; i < 10_050; i++) {
+            first.accrue(random.nextInt(1_000));
+            second.accrue(random.nextInt(1_000_000));
+        }
+        assertTrue(reduction.reduce(first.combine(second), 3));
+    }
+
+    @Test
+    void testDoubleTreeReduction() {
+        Random random = new Random(42);
+        TreeReduction<DoubleHistogram, ConcurrentDoubleHistogram> reduction = new TreeReduction<>(
+                HistogramOperations.DOUBLE, HistogramOperations.CONCURRENT_DOUBLE, 37);
+        TreeReduction<DoubleHistogram, ConcurrentDoubleHistogram>.Batches batches = reduction.newBatches();
+        for (int i = 0; i < 5_000; i++) {
+            batches.accrue(random.nextDouble() * 500);
+        }
+        assertTrue(reduction.reduce(batches, 2));
+    }
+}
@@ -0,0 +1,135 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ValueReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLongRoundTrip() throws IOException {
+        Random random = new Random(42);
+        long[] values = LongStream.concat(LongStream.of(0, 1, 127, 128, Long.MAX_VALUE),
+                random.longs(100_000, 0, 1L << 40)).toArray();
+        for (ValueFormat format : ValueFormat.values()) {
+            Path path = tempDir.resolve("values." + format);
+            try (ValueWriter writer = new ValueWriter(path, format)) {
+                for (long value : values) {
+                    writer.writeLong(value);
+                }
+            }
+            LongStream.Builder read = LongStream.builder();
+            try (ValueReader reader = new ValueReader(path, format)) {
+                assertEquals(values.length, reader.forEachLong(read::add));
+            }
+            assertArrayEquals(values, read.build().toArray(), format.toString());
+        }
+    }
+
+    @Test
+    void testDoubleRoundTrip() throws IOException {
+        Random random = new Random(42);
+        double[] values = DoubleStream.concat(DoubleStream.of(0.0, 1.0, 1e-300, 1e300, 0.1, 123.456),
+                random.doubles(100_000).map(value -> value * 1000)).toArray();
+        for (ValueFormat format : new ValueFormat[] { ValueFormat.TEXT, ValueFormat.BINARY_LE }) {
+            Path path = tempDir.resolve("values." + format);
+            try (ValueWriter writer = new ValueWriter(path, format)) {
+                for (double value : values) {
+                    writer.writeDouble(value);
+                }
+            }
+            DoubleStream.Builder read = DoubleStream.builder();
+            try (ValueReader reader = new ValueReader(path, format)) {
+                assertEquals(values.length, reader.forEachDouble(read::add));
+            }
+            assertArrayEquals(values, read.build().toArray(), format.toString());
+        }
+    }
+
+    @Test
+    void testParseText() {
+        assertEquals(-42, parseLong("-42"));
+        assertEquals(Long.MAX_VALUE, parseLong("9223372036854775807"));
+        assertThrows(NumberFormatException.class, () -> parseLong("9223372036854775808"));
+        assertThrows(NumberFormatException.class, () -> parseLong("12a"));
+        assertEquals(0.05, parseDouble("0.05"));
+        assertEquals(1.5e-7, parseDouble("1.5E-7"));
+        assertEquals(12345.678901234567, parseDouble("12345.678901234567"));
+        assertThrows(NumberFormatException.class, () -> parseDouble("1e"));
+    }
+
+    private static long parseLong(String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+        return ValueReader.parseLong(buffer, 0, buffer.limit());
+    }
+
+    private static double parseDouble(String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+        return ValueReader.parseDouble(buffer, 0, buffer.limit());
+    }
+
+    @Test
+    void testInvalidValuesNameTheirOffset() throws IOException {
+        Path path = tempDir.resolve("values.txt");
+        Files.writeString(path, "1\n2\nabc\n4\n");
+        assertInvalid("Invalid value: abc in " + path + " at byte offset 4", path, ValueFormat.TEXT);
+        Files.writeString(path, "1\n2\n-5\n");
+        assertInvalid("Negative value: -5 in " + path + " at byte offset 4", path, ValueFormat.TEXT);
+
+        Path binary = tempDir.resolve("values.bin");
+        try (ValueWriter writer = new ValueWriter(binary, ValueFormat.BINARY_LE)) {
+            writer.writeLong(1);
+            writer.writeLong(-1);
+        }
+        assertInvalid("Negative value: -1 in " + binary + " at byte offset 8", binary, ValueFormat.BINARY_LE);
+
+        // the offset of a chunk's value counts from the start of the file
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append(i).append('\n');
+        }
+        int offset = text.length();
+        text.append("-7\n");
+        Files.writeString(path, text);
+        NumberFormatException invalid = assertThrows(NumberFormatException.class,
+                () -> new ChunkedReader(path, ValueFormat.TEXT, Long.BYTES, 0, false, 4).read(() -> null,
+                        (reader, target) -> reader.forEachLong(value -> {
+                        }), (first, second) -> first));
+        assertEquals("Negative value: -7 in " + path + " at byte offset " + offset, invalid.getMessage());
+    }
+
+    private static void assertInvalid(String message, Path path, ValueFormat format) throws IOException {
+        try (ValueReader reader = new ValueReader(path, format)) {
+            NumberFormatException invalid = assertThrows(NumberFormatException.class,
+                    () -> reader.forEachLong(value -> {
+                    }));
+            assertEquals(message, invalid.getMessage());
+        }
+    }
+
+    @Test
+    void testTextWhitespace() throws IOException {
+        Path path = tempDir.resolve("values.txt");
+        Files.writeString(path, "  1\r\n2\t3 \n\n4");
+        LongStream.Builder read = LongStream.builder();
+        try (ValueReader reader = new ValueReader(path, ValueFormat.TEXT)) {
+            reader.forEachLong(read::add);
+        }
+        assertArrayEquals(new long[] { 1, 2, 3, 4 }, read.build().toArray());
+    }
+}
@@ -0,0 +1,89 @@
+package net.edmison.HdrHistogram.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+import org.junit.jupiter.api.Test;
+
+class ZigguratTest {
+
+    private static final int SAMPLES = 2_000_000;
+
+    @Test
+    void testStandardNormalDistribution() {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] values = new double[SAMPLES];
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            values[i] = Ziggurat.nextGaussian(random);
+            sum += values[i];
+            sumOfSquares += values[i] * values[i];
+        }
+        assertEquals(0.0, sum / SAMPLES, 0.003);
+        assertEquals(1.0, sumOfSquares / SAMPLES, 0.005);
+
+        // the standard normal distribution function, at points from the tails,
+        // the edges of the layers and the middle
+        double[] points = { -4, -3, -2, -1, -0.5, 0, 0.5, 1, 2, 3, 4 };
+        double[] expected = { 3.1671e-5, 0.0013499, 0.0227501, 0.1586553, 0.3085375, 0.5, 0.6914625, 0.8413447,
+                0.9772499, 0.9986501, 0.9999683 };
+        Arrays.sort(values);
+        for (int i = 0; i < points.length; i++) {
+            double fraction = (double) below(values, points[i]) / SAMPLES;
+            assertEquals(expected[i], fraction, 0.0015, "at " + points[i]);
+        }
+    }
+
+    @Test
+    void testImpactsMatchLegacyGaussian() {
+        for (boolean flatten : new boolean[] { false, true }) {
+            EventProbability event = new EventProbability(1.0, flatten, 50d, 15d);
+            double[] legacy = impacts(event, new Random(42));
+            double[] ziggurat = impacts(event, RandomEngine.RANDOM.create(42L));
+            if (flatten) {
+                assertTrue(Arrays.stream(ziggurat).allMatch(value -> value >= 50));
+            }
+            // the two sample Kolmogorov-Smirnov statistic, with its critical
+            // value for a significance of 0.001
+            double critical = 1.95 * Math.sqrt(2.0 / legacy.length);
+            assertTrue(kolmogorovSmirnov(legacy, ziggurat) < critical, "flatten " + flatten);
+        }
+    }
+
+    private static double[] impacts(EventProbability event, RandomGenerator random) {
+        double[] impacts = new double[SAMPLES / 10];
+        for (int i = 0; i < impacts.length; i++) {
+            impacts[i] = event.nextImpact(random);
+        }
+        Arrays.sort(impacts);
+        return impacts;
+    }
+
+    private static int below(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return (index < 0 ? -index - 1 : index);
+    }
+
+    private static double kolmogorovSmirnov(double[] first, double[] second) {
+        double statistic = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            double value = Math.min(first[i], second[j]);
+            while (i < first.length && first[i] <= value) {
+                i++;
+            }
+            while (j < second.length && second[j] <= value) {
+                j++;
+            }
+            statistic = Math.max(statistic, Math.abs((double) i / first.length - (double) j / second.length));
+        }
+        return statistic;
+    }
+}